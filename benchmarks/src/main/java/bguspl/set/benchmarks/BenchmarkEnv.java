@@ -0,0 +1,43 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Creates game environments for the benchmarks: no table delays, no logging and a user interface that does nothing.
+ */
+final class BenchmarkEnv {
+
+    private BenchmarkEnv() {}
+
+    /**
+     * Creates a game environment with the given configuration values.
+     *
+     * @param featureSize  - the number of values each feature can take.
+     * @param featureCount - the number of features on every card.
+     * @param players      - the number of (computer) players.
+     * @param rows         - the number of rows on the table.
+     * @param columns      - the number of columns on the table.
+     * @return - the game environment.
+     */
+    static Env create(int featureSize, int featureCount, int players, int rows, int columns) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(players));
+        properties.put("Rows", Integer.toString(rows));
+        properties.put("Columns", Integer.toString(columns));
+        properties.put("TableDelaySeconds", "0");
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config));
+    }
+}
@@ -0,0 +1,112 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Env;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks the dealer handling a set claim: the player places its tokens and the dealer verifies them and awards a
+ * point or a penalty (player threads are not started, so nobody waits for the verdict).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DealerBenchmark {
+
+    @Param({"3"})
+    public int featureSize;
+
+    @Param({"4"})
+    public int featureCount;
+
+    @Param({"2", "8"})
+    public int players;
+
+    @Param({"3"})
+    public int rows;
+
+    @Param({"4"})
+    public int columns;
+
+    private Env env;
+    private Table table;
+    private Dealer dealer;
+    private Player[] seats;
+    private int[] legalSlots;
+    private int[] illegalSlots;
+    private int player;
+
+    @Setup
+    public void setup() {
+        env = BenchmarkEnv.create(featureSize, featureCount, players, rows, columns);
+        table = new Table(env);
+        seats = new Player[players];
+        dealer = new Dealer(env, table, seats);
+        for (int i = 0; i < seats.length; ++i)
+            seats[i] = new Player(env, dealer, table, i, false);
+
+        // deal a table with at least one set on it
+        List<Integer> deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        Random random = new Random(42);
+        List<Integer> cards;
+        do {
+            Collections.shuffle(deck, random);
+            cards = deck.subList(0, env.config.tableSize);
+        } while (env.util.findSets(cards, 1).isEmpty());
+        for (int slot = 0; slot < cards.size(); ++slot)
+            table.placeCard(cards.get(slot), slot);
+
+        int[] set = env.util.findSets(cards, 1).get(0);
+        legalSlots = new int[featureSize];
+        for (int i = 0; i < featureSize; ++i)
+            legalSlots[i] = cards.indexOf(set[i]);
+
+        illegalSlots = new int[featureSize];
+        do {
+            illegalSlots = random.ints(0, env.config.tableSize).distinct().limit(featureSize).toArray();
+        } while (env.util.testSet(dealer.slotsToCards(illegalSlots)));
+
+        // every claim of the legal set must be tested and scored, not dropped as a conflict with the previous one
+        for (int i = 0; i < 2; ++i) {
+            claim(legalSlots);
+            if (seats[player].score() != 1)
+                throw new IllegalStateException("a legal claim did not score");
+        }
+    }
+
+    /**
+     * Claims a set for the next player, then takes the tokens back and makes the dealer forget an accepted set, so that
+     * the next claim on the same slots is tested again.
+     */
+    private void claim(int[] slots) {
+        player = (player + 1) % players;
+        for (int slot : slots)
+            table.placeToken(player, slot);
+        dealer.handlePlayerToCheck(player);
+        for (int slot : slots)
+            table.removeTokenByPlayer(player, slot);
+        dealer.clearRewardedSets();
+    }
+
+    @Benchmark
+    public void claimLegalSet() {
+        claim(legalSlots);
+    }
+
+    @Benchmark
+    public void claimIllegalSet() {
+        claim(illegalSlots);
+    }
+}
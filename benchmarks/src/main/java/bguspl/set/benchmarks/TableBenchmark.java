@@ -0,0 +1,70 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Env;
+import bguspl.set.ex.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks placing and removing player tokens on the table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TableBenchmark {
+
+    @Param({"2", "8", "32"})
+    public int players;
+
+    @Param({"3"})
+    public int rows;
+
+    @Param({"4"})
+    public int columns;
+
+    private Env env;
+    private Table table;
+    private int player;
+    private int slot;
+
+    @Setup
+    public void setup() {
+        env = BenchmarkEnv.create(3, 4, players, rows, columns);
+        table = new Table(env);
+        for (int slot = 0; slot < env.config.tableSize; ++slot)
+            table.placeCard(slot, slot);
+    }
+
+    private void next() {
+        player = (player + 1) % players;
+        slot = (slot + 1) % env.config.tableSize;
+    }
+
+    /**
+     * A player toggling a token on and off a slot.
+     */
+    @Benchmark
+    public boolean placeAndRemoveToken() {
+        next();
+        table.placeToken(player, slot);
+        return table.removeTokenByPlayer(player, slot);
+    }
+
+    /**
+     * A player filling all its tokens, after which the dealer clears the slots (as after a legal set).
+     */
+    @Benchmark
+    public boolean placeTokensAndClearSlots() {
+        next();
+        boolean removed = false;
+        for (int i = 0; i < env.config.featureSize; ++i)
+            table.placeToken(player, (slot + i) % env.config.tableSize);
+        for (int i = 0; i < env.config.featureSize; ++i)
+            removed |= table.removeToken((slot + i) % env.config.tableSize);
+        return removed;
+    }
+}
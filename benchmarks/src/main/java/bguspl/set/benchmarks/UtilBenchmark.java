@@ -0,0 +1,100 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Env;
+import bguspl.set.Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks the set checking and set finding utilities for different card configurations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilBenchmark {
+
+    private static final int CLAIMS = 1024;
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"4", "5"})
+    public int featureCount;
+
+    @Param({"12"})
+    public int tableSize;
+
+    private Util util;
+    private List<Integer> deck;
+    private int[] deckCards;
+    private List<Integer> tableCards;
+    private int[][] legalClaims;
+    private int[][] randomClaims;
+    private int claim;
+
+    @Setup
+    public void setup() {
+        Env env = BenchmarkEnv.create(featureSize, featureCount, 2, 1, tableSize);
+        util = env.util;
+        Random random = new Random(42);
+
+        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, random);
+        tableCards = new ArrayList<>(deck.subList(0, tableSize));
+        deckCards = deck.stream().mapToInt(Integer::intValue).toArray();
+
+        List<int[]> sets = util.findSets(deck, CLAIMS);
+        legalClaims = new int[CLAIMS][];
+        randomClaims = new int[CLAIMS][];
+        for (int i = 0; i < CLAIMS; ++i) {
+            legalClaims[i] = sets.get(i % sets.size());
+            randomClaims[i] = random.ints(featureSize, 0, env.config.deckSize).toArray();
+        }
+    }
+
+    @Benchmark
+    public boolean testSetLegal() {
+        claim = (claim + 1) & (CLAIMS - 1);
+        return util.testSet(legalClaims[claim]);
+    }
+
+    @Benchmark
+    public boolean testSetRandom() {
+        claim = (claim + 1) & (CLAIMS - 1);
+        return util.testSet(randomClaims[claim]);
+    }
+
+    /**
+     * All the sets among the cards on the table (as used for hints).
+     */
+    @Benchmark
+    public List<int[]> findSetsOnTable() {
+        return util.findSets(tableCards, Integer.MAX_VALUE);
+    }
+
+    /**
+     * A single set in the whole deck (as used by the dealer to decide whether the game is over).
+     */
+    @Benchmark
+    public List<int[]> findSetInDeck() {
+        return util.findSets(deck, 1);
+    }
+
+    /**
+     * The same, reading the dealer's primitive deck directly (see Deck::cards).
+     */
+    @Benchmark
+    public List<int[]> findSetInDeckArray() {
+        return util.findSets(deckCards, deckCards.length, 1);
+    }
+}
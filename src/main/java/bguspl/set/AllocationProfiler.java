@@ -0,0 +1,237 @@
+package bguspl.set;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Plays headless games of computer players (see Simulation) the way the real game plays them (through
+ * UserInterfaceDecorator and with the logging of the configuration), while streaming JFR events of the same JVM, and
+ * writes a summary of the garbage they produce: the bytes allocated by every thread (dealer, player0, computer-0 etc.,
+ * summed over all the games), the garbage collections and their pauses, and the top allocation sites. The summary has
+ * no timestamps and is sorted, so that the summaries of two builds can be diffed (the games per second, which differ
+ * from run to run, are only printed to the console).
+ * <p>
+ * The allocated bytes are estimated from the weights of the jdk.ObjectAllocationSample events (every sample weighs
+ * the bytes its thread allocated since the previous one), so they are close to the real totals when the sampling rate
+ * is high enough. The first sample of a thread that was alive before the recording started is left out (it weighs
+ * everything the thread allocated before). The allocations of JFR itself (its own threads and the thread that consumes
+ * the events) are left out of the summary, but the garbage collections they cause are not.
+ */
+public class AllocationProfiler {
+
+    /**
+     * The maximum number of jdk.ObjectAllocationSample events per second (the JFR default is 150).
+     */
+    static final String SAMPLE_RATE = "10000/s";
+
+    /**
+     * The number of allocation sites in the summary.
+     */
+    static final int TOP_SITES = 20;
+
+    /**
+     * Committed after the games, so that the profiler knows when all their events were consumed.
+     */
+    @Name(ProfileEnd.NAME)
+    @Label("Profile End")
+    static class ProfileEnd extends Event {
+        static final String NAME = "bguspl.set.ProfileEnd";
+    }
+
+    private final Logger logger;
+    private final Simulation simulation;
+
+    /**
+     * The estimated bytes allocated by every thread name, and at every allocation site.
+     */
+    private final Map<String, Long> threadBytes = new HashMap<>();
+    private final Map<String, Long> siteBytes = new HashMap<>();
+
+    /**
+     * The number of collections, the total pause and the longest pause (in nanoseconds) of every garbage collector.
+     */
+    private final Map<String, long[]> collections = new HashMap<>();
+
+    /**
+     * The id of the thread that consumes the events (-1 until the first event).
+     */
+    private long consumer = -1;
+
+    /**
+     * The ids of the threads that were alive when the recording started and were not sampled yet.
+     */
+    private final Set<Long> unsampled = new HashSet<>();
+
+    /**
+     * The class constructor.
+     *
+     * @param logger     - the logger for the profiled games.
+     * @param properties - the game configuration (see Simulation for the values replaced).
+     */
+    public AllocationProfiler(Logger logger, Properties properties) {
+        this.logger = logger;
+        this.simulation = new Simulation(logger, properties, true);
+    }
+
+    /**
+     * Plays the given number of games one after the other, prints how many were played per second and returns the
+     * summary of their allocations.
+     *
+     * @param games - the number of games to play.
+     * @return - the summary.
+     */
+    public String profile(int games) throws InterruptedException {
+        CountDownLatch ended = new CountDownLatch(1);
+        long nanos;
+        long sets = 0;
+        synchronized (this) {
+            for (Thread thread : Thread.getAllStackTraces().keySet())
+                unsampled.add(thread.getId());
+        }
+        try (RecordingStream stream = new RecordingStream()) {
+            stream.enable("jdk.ObjectAllocationSample").with("throttle", SAMPLE_RATE).withStackTrace();
+            stream.enable("jdk.GarbageCollection");
+            stream.enable(ProfileEnd.class);
+            stream.onEvent("jdk.ObjectAllocationSample", this::allocated);
+            stream.onEvent("jdk.GarbageCollection", this::collected);
+            stream.onEvent(ProfileEnd.NAME, e -> ended.countDown());
+            stream.startAsync();
+
+            long start = System.nanoTime();
+            for (int game = 0; game < games; ++game)
+                for (int score : simulation.playGame().scores())
+                    sets += score;
+            nanos = System.nanoTime() - start;
+            System.out.printf(Locale.ROOT, "Profiled %d games: %.1f games per second.%n", games, games * 1e9 / nanos);
+
+            // the stream is flushed about once a second, so wait for the events of the games to be consumed
+            new ProfileEnd().commit();
+            if (!ended.await(10, TimeUnit.SECONDS))
+                System.out.println("Timed out waiting for the JFR events, the profile may be incomplete.");
+        }
+        synchronized (this) {
+            return summary(games, sets);
+        }
+    }
+
+    /**
+     * Plays the given number of games and writes the summary of their allocations to a file.
+     *
+     * @param games - the number of games to play.
+     * @param file  - the file to write the summary to.
+     * @throws IOException - if the file cannot be written.
+     */
+    public void run(int games, Path file) throws InterruptedException, IOException {
+        if (simulation.config().players == 0) {
+            System.out.println("Cannot profile games without computer players (set ComputerPlayers in the config).");
+            return;
+        }
+        String summary = profile(games);
+        Files.writeString(file, summary, StandardCharsets.UTF_8);
+        System.out.print(summary);
+        System.out.println("Wrote the allocation profile to " + file);
+    }
+
+    private synchronized void allocated(RecordedEvent event) {
+        if (consumer == -1) consumer = Thread.currentThread().getId();
+        RecordedThread thread = event.getThread();
+        if (thread == null || thread.getJavaThreadId() == consumer) return;
+        String name = thread.getJavaName() == null ? thread.getOSName() : thread.getJavaName();
+        if (name.startsWith("JFR ") || unsampled.remove(thread.getJavaThreadId())) return;
+        long weight = event.getLong("weight");
+        threadBytes.merge(name, weight, Long::sum);
+        siteBytes.merge(site(event), weight, Long::sum);
+    }
+
+    private synchronized void collected(RecordedEvent event) {
+        long[] collector = collections.computeIfAbsent(event.getString("name"), name -> new long[3]);
+        ++collector[0];
+        collector[1] += event.getDuration("sumOfPauses").toNanos();
+        collector[2] = Math.max(collector[2], event.getDuration("longestPause").toNanos());
+    }
+
+    /**
+     * @param event - a jdk.ObjectAllocationSample event.
+     * @return - the first method of the game on its stack (or the top method if there is none) and the class of the
+     *         object allocated. Line numbers are left out, so that the sites of two builds can be compared.
+     */
+    static String site(RecordedEvent event) {
+        RecordedClass allocated = event.getClass("objectClass");
+        String type = allocated == null ? "?" : allocated.getName();
+        if (event.getStackTrace() == null || event.getStackTrace().getFrames().isEmpty()) return "? " + type;
+        RecordedFrame site = event.getStackTrace().getFrames().get(0);
+        for (RecordedFrame frame : event.getStackTrace().getFrames())
+            if (frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith("bguspl.")) {
+                site = frame;
+                break;
+            }
+        return site.getMethod().getType().getName() + "::" + site.getMethod().getName() + " " + type;
+    }
+
+    private String summary(int games, long sets) {
+        Config config = simulation.config();
+        long total = threadBytes.values().stream().mapToLong(Long::longValue).sum();
+        StringBuilder sb = new StringBuilder();
+        line(sb, "allocation profile: %d games of %d players (%s strategy, log level %s), %.1f sets per game",
+                games, config.players, config.computerStrategy, logger.getLevel(), (double) sets / games);
+        line(sb, "allocated: %s (%s per game)", bytes(total), bytes(total / Math.max(1, games)));
+
+        line(sb, "");
+        line(sb, "threads:");
+        threadBytes.entrySet().stream().sorted(byBytes()).forEach(e ->
+                line(sb, "  %-24s %10s %10s per game", e.getKey(), bytes(e.getValue()), bytes(e.getValue() / games)));
+
+        line(sb, "");
+        line(sb, "garbage collections:");
+        if (collections.isEmpty()) line(sb, "  none");
+        collections.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e ->
+                line(sb, "  %-24s count=%d total pause=%.3f ms max pause=%.3f ms", e.getKey(), e.getValue()[0],
+                        e.getValue()[1] / 1e6, e.getValue()[2] / 1e6));
+
+        line(sb, "");
+        line(sb, "top allocation sites:");
+        siteBytes.entrySet().stream().sorted(byBytes()).limit(TOP_SITES).forEach(e ->
+                line(sb, "  %5.1f%% %10s  %s", 100.0 * e.getValue() / Math.max(1, total), bytes(e.getValue()),
+                        e.getKey()));
+        return sb.toString();
+    }
+
+    private static Comparator<Map.Entry<String, Long>> byBytes() {
+        return Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+    }
+
+    private static void line(StringBuilder sb, String format, Object... args) {
+        sb.append(String.format(Locale.ROOT, format, args)).append(System.lineSeparator());
+    }
+
+    /**
+     * @param bytes - a number of bytes.
+     * @return - the number in B, KB or MB.
+     */
+    static String bytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,160 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A log handler that does not block the game threads on the log file. Records are put in a bounded lock-free ring
+ * buffer, and a single background writer thread formats them and writes them in batches, flushing the file only when
+ * the buffer is empty. When the buffer is full, records below Level.SEVERE are dropped (and counted in the log), while
+ * SEVERE records wait for room, so memory stays bounded and errors are never lost.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The ring buffer of records waiting to be written (a null entry has not been published yet).
+     */
+    private final AtomicReferenceArray<LogRecord> buffer;
+    private final int mask;
+
+    /**
+     * The sequence number of the next record to claim (by the logging threads) and to write (by the writer thread).
+     */
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * The sequence number up to which records were written and flushed.
+     */
+    private volatile long flushed;
+
+    /**
+     * The number of records dropped since the last time it was reported.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Writer out;
+    private final Thread writer;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    /**
+     * The class constructor. Starts the writer thread.
+     *
+     * @param out      - the stream to write the formatted records to (closed with the handler).
+     * @param capacity - the maximum number of records waiting to be written (rounded up to a power of 2).
+     */
+    public AsyncLogHandler(Writer out, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        buffer = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        this.out = out;
+        setFormatter(new SimpleFormatter());
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+
+        long sequence;
+        do {
+            // claim a sequence number only while there is room for it, re-reading both ends while waiting
+            while ((sequence = tail.get()) - head > mask) {
+                if (closed || record.getLevel().intValue() < Level.SEVERE.intValue()) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                wakeWriter();
+                Thread.yield();
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        buffer.set((int) sequence & mask, record);
+        if (sleeping) wakeWriter();
+    }
+
+    /**
+     * Waits until all the records published so far are written and flushed.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (flushed < target && writer.isAlive()) {
+            wakeWriter();
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    /**
+     * Writes all the records published so far, then stops the writer thread and closes the stream.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        wakeWriter();
+        try {
+            writer.join();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * The writer thread starts here: drains the buffer in batches until the handler is closed.
+     */
+    private void write() {
+        while (true) {
+            drain();
+            try {
+                long lost = dropped.getAndSet(0);
+                if (lost > 0) out.write("[" + lost + " log records dropped]" + System.lineSeparator());
+                out.flush();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.FLUSH_FAILURE);
+            }
+            flushed = head;
+
+            if (closed && head == tail.get()) break;
+            sleeping = true;
+            if (buffer.get((int) head & mask) == null && !closed) LockSupport.park(this);
+            sleeping = false;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * Writes the records in the buffer, up to the first one that was claimed but not published yet.
+     */
+    private void drain() {
+        long next = head;
+        LogRecord record;
+        while ((record = buffer.get((int) next & mask)) != null) {
+            buffer.set((int) next & mask, null);
+            head = ++next;
+            try {
+                out.write(getFormatter().format(record));
+            } catch (IOException | RuntimeException e) {
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The source of time for the game logic: all the game's timers (the turn countdown, freezes, table delays and the
+ * computer players' reaction time) read and wait for time through the clock in Env, so they can run in real time
+ * (SYSTEM), in time advanced by a test (ManualClock), or in virtual time (VirtualClock, used in lockstep mode).
+ */
+public interface Clock {
+
+    /**
+     * @return - the current time in milliseconds.
+     */
+    long millis();
+
+    /**
+     * Waits until the given number of milliseconds has passed on this clock.
+     *
+     * @param millis - the time to wait in milliseconds.
+     * @throws InterruptedException - if the thread was interrupted while waiting.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Takes the head of a queue, waiting up to the given number of milliseconds on this clock for an element.
+     *
+     * @param queue  - the queue.
+     * @param millis - the maximum time to wait in milliseconds.
+     * @return - the head of the queue, or null if the time passed first.
+     * @throws InterruptedException - if the thread was interrupted while waiting.
+     */
+    <E> E poll(BlockingQueue<E> queue, long millis) throws InterruptedException;
+
+    /**
+     * The wall clock (System::currentTimeMillis).
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long millis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            if (millis > 0) Thread.sleep(millis);
+        }
+
+        @Override
+        public <E> E poll(BlockingQueue<E> queue, long millis) throws InterruptedException {
+            return queue.poll(millis, TimeUnit.MILLISECONDS);
+        }
+    };
+}
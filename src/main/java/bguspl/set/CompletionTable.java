@@ -0,0 +1,265 @@
+package bguspl.set;
+
+/**
+ * A precomputed lookup table used for checking sets without decoding cards on every call.
+ * When the feature size is 3, any two cards determine the unique third card that completes a set with them, so the
+ * table maps every pair of cards to that card and checking a set becomes a single array read.
+ * Otherwise, cards are checked in their packed form (see Util::cardToPacked) with a few bitwise operations, and only
+ * configurations whose features do not fit in a long fall back to checking the decoded features in place.
+ */
+public class CompletionTable {
+
+    /**
+     * The maximum number of pair entries to precompute (larger decks fall back to checking the features in place).
+     */
+    private static final int MAX_PAIR_ENTRIES = 1 << 22;
+
+    /**
+     * The largest feature size supported by complete (the values seen for a feature are kept as bits of an int).
+     */
+    private static final int MAX_COMPLETION_FEATURE_SIZE = 31;
+
+    /**
+     * The number of values each feature can take.
+     */
+    private final int featureSize;
+
+    /**
+     * The number of features on every card.
+     */
+    private final int featureCount;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private final int deckSize;
+
+    /**
+     * The features of every card, featureCount entries per card (i.e. features[card * featureCount + i]).
+     */
+    private final int[] features;
+
+    /**
+     * The packed form of every card (null if the features of a card do not fit in a long).
+     */
+    private final long[] packed;
+
+    /**
+     * A mask with all the bits of the lowest packed feature set (i.e. all the values of a single feature).
+     */
+    private final long valueMask;
+
+    /**
+     * A mask with the lowest bit of every packed feature set.
+     */
+    private final long featureMask;
+
+    /**
+     * The card completing a set with the pair (a, b) at thirds[a * deckSize + b] (null if not precomputed).
+     */
+    private final int[] thirds;
+
+    public CompletionTable(Config config) {
+        this.featureSize = config.featureSize;
+        this.featureCount = config.featureCount;
+        this.deckSize = config.deckSize;
+
+        features = new int[deckSize * featureCount];
+        for (int card = 0; card < deckSize; ++card) {
+            int value = card;
+            for (int i = featureCount - 1; i >= 0; --i) {
+                features[card * featureCount + i] = value % featureSize;
+                value /= featureSize;
+            }
+        }
+
+        if (featureSize >= 2 && featureSize * featureCount <= Long.SIZE) {
+            valueMask = featureSize == Long.SIZE ? -1L : (1L << featureSize) - 1;
+            long lowest = 0;
+            for (int i = 0; i < featureCount; ++i)
+                lowest |= 1L << (i * featureSize);
+            featureMask = lowest;
+            packed = new long[deckSize];
+            for (int card = 0; card < deckSize; ++card)
+                for (int i = 0; i < featureCount; ++i)
+                    packed[card] |= 1L << (i * featureSize + feature(card, i));
+        } else {
+            valueMask = featureMask = 0;
+            packed = null;
+        }
+
+        if (featureSize == 3 && (long) deckSize * deckSize <= MAX_PAIR_ENTRIES) {
+            thirds = new int[deckSize * deckSize];
+            for (int a = 0; a < deckSize; ++a)
+                for (int b = 0; b < deckSize; ++b) {
+                    // per feature: same values complete with the same value, different ones with the remaining one
+                    int third = 0;
+                    for (int i = 0; i < featureCount; ++i)
+                        third = third * 3 + (6 - feature(a, i) - feature(b, i)) % 3;
+                    thirds[a * deckSize + b] = third;
+                }
+        } else thirds = null;
+    }
+
+    /**
+     * Returns the value of a single feature of a card.
+     *
+     * @param card    - the card id.
+     * @param feature - the index of the feature (between 0 and featureCount - 1).
+     * @return - the value of the feature.
+     */
+    public int feature(int card, int feature) {
+        return features[card * featureCount + feature];
+    }
+
+    /**
+     * Returns the packed form of a card (see Util::cardToPacked).
+     *
+     * @param card - the card id.
+     * @return - the packed card, or 0 if cards cannot be packed in this configuration.
+     */
+    public long packed(int card) {
+        return packed == null || card < 0 || card >= deckSize ? 0 : packed[card];
+    }
+
+    /**
+     * Converts a packed card back to its card id.
+     *
+     * @param card - the packed card.
+     * @return - the card id.
+     */
+    private int unpack(long card) {
+        int id = 0;
+        for (int i = 0; i < featureCount; ++i)
+            id = id * featureSize + Long.numberOfTrailingZeros(card >>> (i * featureSize));
+        return id;
+    }
+
+    /**
+     * Finds the features whose packed values differ between cards.
+     *
+     * @param any - the bitwise or of the packed cards.
+     * @param all - the bitwise and of the packed cards.
+     * @return - a mask with all the bits of every feature on which the cards are not all the same.
+     */
+    private long differentFeatures(long any, long all) {
+        long different = any ^ all, lowest = different;
+        for (int i = 1; i < featureSize; ++i)
+            lowest |= different >>> i;
+        return (lowest & featureMask) * valueMask;
+    }
+
+    /**
+     * Checks if an array of packed cards forms a legal set (see Util::testPackedSet).
+     *
+     * @param cards - the array of featureSize packed cards.
+     * @return - true iff the array forms a legal set.
+     */
+    public boolean testPackedSet(long[] cards) {
+        if (packed == null || cards.length != featureSize) return false;
+        long any = 0, all = -1L;
+        for (long card : cards) {
+            if (card == 0) return false;
+            any |= card;
+            all &= card;
+        }
+        // featureSize cards that are not all the same on a feature must have every value of it
+        long different = differentFeatures(any, all);
+        return (any & different) == different;
+    }
+
+    /**
+     * Returns the card that completes a set with the two given cards.
+     *
+     * @param a - the first card id.
+     * @param b - the second card id.
+     * @return - the completing card id, or -1 if pairs are not precomputed for this configuration.
+     */
+    public int thirdCard(int a, int b) {
+        return thirds == null ? -1 : thirds[a * deckSize + b];
+    }
+
+    /**
+     * Checks whether complete can be used with this configuration (i.e. a set has at least 3 cards and feature values
+     * fit in the bits of an int).
+     *
+     * @return - true iff complete is supported.
+     */
+    public boolean canComplete() {
+        return featureSize >= 3 && featureSize <= MAX_COMPLETION_FEATURE_SIZE;
+    }
+
+    /**
+     * Returns the card that completes a set with the first featureSize - 1 cards of the given array. For every feature,
+     * cards that all share a value are completed by that value, and cards that all differ are completed by the one
+     * value none of them has.
+     *
+     * @param cards - an array of at least featureSize - 1 distinct card ids.
+     * @pre - canComplete()
+     * @return - the completing card id, or -1 if no card completes a set with these cards.
+     */
+    public int complete(int[] cards) {
+        int count = featureSize - 1;
+        if (thirds != null) return thirds[cards[0] * deckSize + cards[1]];
+
+        if (packed != null) {
+            long any = 0, all = -1L;
+            for (int j = 0; j < count; ++j) {
+                any |= packed[cards[j]];
+                all &= packed[cards[j]];
+            }
+            // every feature the cards do not share must already have all values but one
+            long different = differentFeatures(any, all);
+            if (Long.bitCount(any & different) != count * Long.bitCount(different) / featureSize) return -1;
+            return unpack((any & ~different) | (~any & different));
+        }
+
+        int allValues = (1 << featureSize) - 1;
+        int card = 0;
+        for (int i = 0; i < featureCount; ++i) {
+            int values = 0;
+            for (int j = 0; j < count; ++j)
+                values |= 1 << feature(cards[j], i);
+            int distinct = Integer.bitCount(values);
+            if (distinct == 1) card = card * featureSize + Integer.numberOfTrailingZeros(values);
+            else if (distinct == count) card = card * featureSize + Integer.numberOfTrailingZeros(~values & allValues);
+            else return -1;
+        }
+        return card;
+    }
+
+    /**
+     * Checks if an array of cards forms a legal set (see Util::testSet).
+     *
+     * @param cards - the array of cards.
+     * @return - true iff the array forms a legal set.
+     */
+    public boolean testSet(int[] cards) {
+        for (int card : cards)
+            if (card < 0 || card >= deckSize) return false;
+
+        if (thirds != null && cards.length == 3)
+            return thirds[cards[0] * deckSize + cards[1]] == cards[2];
+
+        if (packed != null && cards.length == featureSize) {
+            long any = 0, all = -1L;
+            for (int card : cards) {
+                any |= packed[card];
+                all &= packed[card];
+            }
+            long different = differentFeatures(any, all);
+            return (any & different) == different;
+        }
+
+        for (int i = 0; i < featureCount; ++i) {
+            boolean sameSame = true, butDifferent = true;
+            for (int j = 1; j < cards.length && sameSame; ++j)
+                sameSame = feature(cards[0], i) == feature(cards[j], i);
+            for (int j = 0; j < cards.length && butDifferent; ++j)
+                for (int k = j + 1; k < cards.length && butDifferent; ++k)
+                    butDifferent = feature(cards[j], i) != feature(cards[k], i);
+            if (sameSame == butDifferent) return false;
+        }
+        return true;
+    }
+}
@@ -1,5 +1,7 @@
 package bguspl.set;
 
+import bguspl.set.ex.KeyBuffer;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -46,6 +48,16 @@ public class Config {
      */
     public final int computerPlayers;
 
+    /**
+     * The strategy of the computer players ("random" presses random slots, "sets" claims sets found on the table)
+     */
+    public final String computerStrategy;
+
+    /**
+     * The number of milliseconds a computer player takes to react to the table before pressing keys
+     */
+    public final long computerReactionMillis;
+
     /**
      * The total number of players (human + computer) in the game
      */
@@ -56,6 +68,32 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * Whether to run the dealer and player threads as virtual threads (requires Java 21, otherwise ignored)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * The seed of all the game's random choices (the same seed and configuration play the same game in lockstep mode)
+     */
+    public final long randomSeed;
+
+    /**
+     * Whether the dealer thread plays the computer players itself, in turns and in virtual time, instead of running
+     * them on their own threads (only for games without human players)
+     */
+    public final boolean lockstep;
+
+    /**
+     * Whether to record a binary journal of the game next to its log file (see Journal)
+     */
+    public final boolean journal;
+
+    /**
+     * The number of milliseconds between dumps of the game metrics to the standard output (0 for none, see Metrics)
+     */
+    public final long metricsDumpMillis;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -66,6 +104,11 @@ public class Config {
      */
     public final long turnTimeoutWarningMillis;
 
+    /**
+     * The number of milliseconds between countdown display updates while the warning is displayed
+     */
+    public final long timerRefreshMillis;
+
     /**
      * The number of milliseconds a player gets frozen for when he scores a point
      */
@@ -132,6 +175,18 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The number of times per second the changes of the game are shown on the screen (0 to show every change as it is
+     * made, see UserInterfaceBatcher)
+     */
+    public final int uiFramesPerSecond;
+
+    /**
+     * Which key press to drop when a player presses keys faster than it can handle them: the newest (the presses made
+     * while the player is busy are ignored) or the oldest (see KeyBuffer)
+     */
+    public final KeyBuffer.DropPolicy keyDropPolicy;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -148,6 +203,19 @@ public class Config {
             "81,87,69,82,65,83,68,70,90,88,67,86",
             "85,73,79,80,74,75,76,59,77,44,46,47"};
 
+    /**
+     * Returns a seed for the random choices of one part of the game, derived from randomSeed.
+     *
+     * @param stream - the part of the game (e.g. 0 for the dealer and player + 1 for a computer player).
+     * @return - the seed (different for every stream).
+     */
+    public long randomSeed(int stream) {
+        long z = randomSeed + (stream + 1) * 0x9E3779B97F4A7C15L; // splitmix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Attempts to read the config properties from the current working directory. Otherwise, tries to load them
      * as a resource.
@@ -155,7 +223,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -202,10 +270,27 @@ public class Config {
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        computerStrategy = properties.getProperty("ComputerStrategy", "sets").trim();
+        computerReactionMillis = (long) (Double.parseDouble(properties.getProperty("ComputerReactionSeconds", "1")) * 1000.0);
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        if (virtualThreads && !VirtualThreads.supported())
+            logger.severe("warning: virtual threads are not supported by this JVM (Java 21+). Using platform threads.");
+        journal = Boolean.parseBoolean(properties.getProperty("Journal", "False"));
+        String seed = properties.getProperty("RandomSeed", "").trim();
+        randomSeed = seed.isEmpty() ? System.nanoTime() : Long.parseLong(seed);
+        if (seed.isEmpty()) logger.config("random seed: " + randomSeed); // to replay the game in lockstep mode
+        boolean lockstep = Boolean.parseBoolean(properties.getProperty("Lockstep", "False"));
+        if (lockstep && humanPlayers > 0) {
+            logger.severe("warning: lockstep mode is only supported without human players. Using threads.");
+            lockstep = false;
+        }
+        this.lockstep = lockstep;
+        metricsDumpMillis = (long) (Double.parseDouble(properties.getProperty("MetricsDumpSeconds", "0")) * 1000.0);
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
+        timerRefreshMillis = (long) (Double.parseDouble(properties.getProperty("TimerRefreshSeconds", "0.01")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
@@ -224,6 +309,8 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        uiFramesPerSecond = Integer.parseInt(properties.getProperty("UIFramesPerSecond", "60"));
+        keyDropPolicy = KeyBuffer.DropPolicy.parse(properties.getProperty("KeyDropPolicy", "newest"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -8,11 +8,36 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Journal journal;
+    public final Clock clock;
+    public final Metrics metrics;
 
-    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Journal journal, Clock clock, Metrics metrics) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.journal = journal;
+        this.clock = clock;
+        this.metrics = metrics;
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Journal journal, Clock clock) {
+        this(logger, config, ui, util, journal, clock, new Metrics(config.players));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Journal journal) {
+        this(logger, config, ui, util, journal, clockFor(config));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, Journal.NONE);
+    }
+
+    /**
+     * @return - the clock games with this configuration run on (a virtual clock in lockstep mode).
+     */
+    static Clock clockFor(Config config) {
+        return config.lockstep ? new VirtualClock() : Clock.SYSTEM;
     }
 }
@@ -0,0 +1,88 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the entities of a single game (table, dealer and players) created over a game environment. Games
+ * share no state, so any number of them can be played at once.
+ */
+public class Game {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+    private final Dealer dealer;
+    private final Player[] players;
+
+    /**
+     * The class constructor.
+     *
+     * @param env     - the environment object.
+     * @param players - the array to fill with the players (of config.players entries, may already be used by the ui).
+     */
+    public Game(Env env, Player[] players) {
+        this.env = env;
+        this.players = players;
+        table = new Table(env);
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+    }
+
+    /**
+     * The class constructor.
+     *
+     * @param env - the environment object.
+     */
+    public Game(Env env) {
+        this(env, new Player[env.config.players]);
+    }
+
+    /**
+     * Plays the game: starts the dealer thread (which starts the player threads) and waits for it to finish.
+     */
+    public void play() throws InterruptedException {
+        Thread dealerThread = VirtualThreads.create(env.config.virtualThreads, dealer, "dealer");
+        ThreadLogger.logStart(env.logger, dealerThread.getName());
+        dealerThread.start();
+        try {
+            dealerThread.join();
+        } catch (InterruptedException e) {
+            terminate();
+            throw e;
+        } finally {
+            ThreadLogger.logStop(env.logger, dealerThread.getName());
+        }
+    }
+
+    /**
+     * Called when the game should be terminated due to an external event.
+     */
+    public void terminate() {
+        dealer.terminate();
+    }
+
+    /**
+     * @return - the scores of the players (by player id).
+     */
+    public int[] scores() {
+        return Arrays.stream(players).mapToInt(Player::score).toArray();
+    }
+
+    /**
+     * @return - the ids of the winning players, as announced by the dealer (empty until the game is over).
+     */
+    public int[] winners() {
+        return dealer.getWinners();
+    }
+}
@@ -0,0 +1,621 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A user interface that plays the game over TCP: every remote client takes the seat of a human player (the first free
+ * one, or watches the game if there is none), its key presses are forwarded to that player (see Player::keyPressed),
+ * and all the user interface events are broadcast to all the clients.
+ * <p>
+ * A single server thread serves all the clients on a non-blocking selector. The game threads only encode their events
+ * into a shared outbox (waking the server thread when it was empty), and the server thread writes everything in the
+ * outbox to every client at once, so events are batched under load and a slow client never blocks the game (its
+ * unsent events are kept for it, and it is disconnected if it falls MAX_PENDING bytes behind).
+ * <p>
+ * The protocol is binary and big-endian. Every message starts with its type byte, and all the numbers are shorts
+ * except for times and scores (ints). A client sends KEY messages (slot), and the server sends WELCOME (player id or
+ * -1, players, rows, columns) and the current cards and scores to a new client, then the events of the user interface.
+ */
+public class GameServer implements UserInterface {
+
+    /**
+     * The message types sent by the server (the fields follow in the order of the UserInterface parameters).
+     */
+    public static final byte WELCOME = 0;
+    public static final byte PLACE_CARD = 1;
+    public static final byte REMOVE_CARD = 2;
+    public static final byte PLACE_TOKEN = 3;
+    public static final byte REMOVE_TOKENS = 4;
+    public static final byte REMOVE_SLOT_TOKENS = 5;
+    public static final byte REMOVE_TOKEN = 6;
+    public static final byte COUNTDOWN = 7;
+    public static final byte ELAPSED = 8;
+    public static final byte FREEZE = 9;
+    public static final byte SCORE = 10;
+    public static final byte WINNERS = 11;
+
+    /**
+     * The message type sent by the clients: a key press of a slot.
+     */
+    public static final byte KEY = 0;
+    public static final int KEY_LENGTH = 3;
+
+    /**
+     * The maximum number of unsent bytes a client may fall behind by before it is disconnected.
+     */
+    private static final int MAX_PENDING = 1 << 20;
+
+    /**
+     * The time the server keeps sending the last events to the clients when it is disposed.
+     */
+    private static final long CLOSE_MILLIS = 1000;
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * The players of the game (filled in by the game, see Game).
+     */
+    private final Player[] players;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+
+    /**
+     * Guards the outbox, the state shown to new clients, and the number of seats taken.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition seated = lock.newCondition();
+
+    /**
+     * The events encoded since the server thread last took them (in write mode), and the System::nanoTime of the
+     * first one.
+     */
+    private ByteBuffer outbox = ByteBuffer.allocate(1 << 12);
+    private long outboxSince;
+    private boolean wakeup;
+
+    /**
+     * The cards on the table and the scores of the players (sent to new clients).
+     */
+    private final int[] cards;
+    private final int[] scores;
+
+    /**
+     * The number of human players' seats taken by clients.
+     */
+    private int seats;
+
+    /**
+     * The events taken from the outbox, and the System::nanoTime of the first one (only used by the server thread).
+     */
+    private ByteBuffer batch = ByteBuffer.allocate(1 << 12);
+    private long batchSince;
+
+    /**
+     * The connected clients, and the client in every human player's seat (only used by the server thread).
+     */
+    private final List<Client> clients = new ArrayList<>();
+    private final Client[] seatClients;
+
+    private volatile boolean closing;
+
+    /**
+     * The statistics of the server: the bytes sent, the key presses received, and the nanoseconds from an event to
+     * the time it was written to a client (the fan-out latency).
+     */
+    private long bytesSent;
+    private long keysReceived;
+    private final Histogram fanOutLatency = new Histogram();
+
+    /**
+     * A connected client (only used by the server thread).
+     */
+    private static final class Client {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final int player;
+        final ByteBuffer in = ByteBuffer.allocate(1 << 8);
+
+        /**
+         * The bytes not written to the client yet (in read mode), and the System::nanoTime of the first event in them.
+         */
+        ByteBuffer out = ByteBuffer.allocate(0);
+        long pendingSince;
+
+        Client(SocketChannel channel, SelectionKey key, int player) {
+            this.channel = channel;
+            this.key = key;
+            this.player = player;
+        }
+    }
+
+    /**
+     * The class constructor. Listens on the port and starts the server thread.
+     *
+     * @param logger  - the logger.
+     * @param config  - the game configuration.
+     * @param players - the players of the game (the clients press keys of the human players among them).
+     * @param port    - the TCP port to listen on (0 for any free port, see port()).
+     * @throws IOException - if the port cannot be listened on.
+     */
+    public GameServer(Logger logger, Config config, Player[] players, int port) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.players = players;
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        scores = new int[config.players];
+        seatClients = new Client[config.humanPlayers];
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::serve, "server");
+        thread.start();
+    }
+
+    /**
+     * @return - the TCP port the server listens on.
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Waits until clients took all the human players' seats.
+     */
+    public void awaitPlayers() throws InterruptedException {
+        lock.lock();
+        try {
+            while (seats < config.humanPlayers)
+                seated.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - a summary of the server statistics (read once the server is disposed).
+     */
+    public String stats() {
+        return String.format("server: bytes sent=%d key presses=%d fan-out latency (us): mean=%.1f p50=%d p99=%d max=%d",
+                bytesSent, keysReceived, fanOutLatency.mean() / 1000, fanOutLatency.percentile(50) / 1000,
+                fanOutLatency.percentile(99) / 1000, fanOutLatency.max() / 1000);
+    }
+
+    /**
+     * The server thread: accepts clients, reads their key presses and writes the events to them.
+     */
+    private void serve() {
+        long closeDeadline = 0;
+        try {
+            while (true) {
+                selector.select(CLOSE_MILLIS);
+                for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable()) read(client);
+                        if (key.isValid() && key.isWritable()) flush(client);
+                    }
+                }
+                broadcast();
+                if (closing) {
+                    if (closeDeadline == 0) closeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_MILLIS);
+                    if (clients.stream().noneMatch(c -> c.out.hasRemaining()) || System.nanoTime() > closeDeadline)
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("game server error: " + e.getMessage());
+        } finally {
+            for (Client client : new ArrayList<>(clients))
+                close(client);
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        int player = -1;
+        for (int i = 0; i < seatClients.length && player == -1; ++i)
+            if (seatClients[i] == null) player = i;
+        Client client = new Client(channel, channel.register(selector, SelectionKey.OP_READ), player);
+        client.key.attach(client);
+
+        boolean events;
+        ByteBuffer welcome = ByteBuffer.allocate(9 + 5 * cards.length + 7 * scores.length);
+        welcome.put(WELCOME).putShort((short) player).putShort((short) config.players)
+                .putShort((short) config.rows).putShort((short) config.columns);
+        lock.lock();
+        try {
+            if (player != -1) {
+                seatClients[player] = client;
+                ++seats;
+                seated.signalAll();
+            }
+            for (int slot = 0; slot < cards.length; ++slot)
+                if (cards[slot] != -1) welcome.put(PLACE_CARD).putShort((short) cards[slot]).putShort((short) slot);
+            for (int p = 0; p < scores.length; ++p)
+                welcome.put(SCORE).putShort((short) p).putInt(scores[p]);
+            // the events so far are in the state sent to the new client, the other clients get them first
+            events = takeOutbox();
+        } finally {
+            lock.unlock();
+        }
+        if (events) deliverBatch();
+        clients.add(client);
+        logger.info("client " + channel.getRemoteAddress() + " connected as player " + player);
+        deliver(client, welcome.flip(), System.nanoTime());
+    }
+
+    private void read(Client client) {
+        try {
+            if (client.channel.read(client.in) < 0) {
+                close(client);
+                return;
+            }
+        } catch (IOException e) {
+            close(client);
+            return;
+        }
+        client.in.flip();
+        while (client.in.remaining() >= KEY_LENGTH) {
+            byte type = client.in.get();
+            int slot = client.in.getShort();
+            if (type != KEY) {
+                logger.severe("client of player " + client.player + " sent an unknown message " + type);
+                close(client);
+                return;
+            }
+            ++keysReceived;
+            if (client.player != -1 && slot >= 0 && slot < config.tableSize && players[client.player] != null)
+                players[client.player].keyPressed(slot);
+        }
+        client.in.compact();
+    }
+
+    /**
+     * Writes the events in the outbox to all the clients.
+     */
+    private void broadcast() {
+        boolean events;
+        lock.lock();
+        try {
+            events = takeOutbox();
+        } finally {
+            lock.unlock();
+        }
+        if (events) deliverBatch();
+    }
+
+    /**
+     * Takes the events in the outbox into the batch (with the lock held).
+     *
+     * @return - false iff there were no events.
+     */
+    private boolean takeOutbox() {
+        if (outbox.position() == 0) return false;
+        ByteBuffer events = outbox;
+        outbox = batch.clear();
+        batch = events.flip();
+        batchSince = outboxSince;
+        return true;
+    }
+
+    /**
+     * Writes the events in the batch to all the clients.
+     */
+    private void deliverBatch() {
+        for (int i = clients.size() - 1; i >= 0; --i) // deliver may disconnect the client
+            deliver(clients.get(i), batch.rewind(), batchSince);
+    }
+
+    /**
+     * Writes as much of the data to a client as it takes now, and keeps the rest for when it can take more.
+     *
+     * @param client - the client.
+     * @param data   - the data (in read mode).
+     * @param since  - the System::nanoTime of the first event in the data.
+     */
+    private void deliver(Client client, ByteBuffer data, long since) {
+        try {
+            if (!client.out.hasRemaining()) {
+                client.pendingSince = since;
+                bytesSent += client.channel.write(data);
+                if (!data.hasRemaining()) {
+                    fanOutLatency.record(System.nanoTime() - since);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            close(client);
+            return;
+        }
+        if (client.out.remaining() + data.remaining() > MAX_PENDING) {
+            logger.severe("client of player " + client.player + " is too slow, disconnecting");
+            close(client);
+            return;
+        }
+        ByteBuffer out = client.out;
+        if (out.capacity() - out.remaining() < data.remaining()) // grow the buffer
+            out = ByteBuffer.allocate(Math.max(2 * out.capacity(), out.remaining() + data.remaining())).put(out).flip();
+        client.out = out.compact().put(data).flip();
+        client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Writes the events kept for a client when it can take more.
+     */
+    private void flush(Client client) {
+        try {
+            bytesSent += client.channel.write(client.out);
+        } catch (IOException e) {
+            close(client);
+            return;
+        }
+        if (!client.out.hasRemaining()) {
+            client.key.interestOps(SelectionKey.OP_READ);
+            fanOutLatency.record(System.nanoTime() - client.pendingSince);
+        }
+    }
+
+    private void close(Client client) {
+        if (!clients.remove(client)) return;
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException ignored) {}
+        if (client.player != -1) {
+            seatClients[client.player] = null;
+            lock.lock();
+            try {
+                --seats;
+            } finally {
+                lock.unlock();
+            }
+        }
+        logger.info("client of player " + client.player + " disconnected");
+    }
+
+    /**
+     * Reserves room for an event in the outbox (with the lock held, released by end even if this throws).
+     *
+     * @param length - the length of the event in bytes.
+     * @return - the outbox to encode the event into.
+     */
+    private ByteBuffer reserve(int length) {
+        if (outbox.position() == 0) {
+            outboxSince = System.nanoTime();
+            wakeup = true;
+        }
+        if (outbox.remaining() < length)
+            outbox = ByteBuffer.allocate(Math.max(2 * outbox.capacity(), outbox.position() + length)).put(outbox.flip());
+        return outbox;
+    }
+
+    /**
+     * Releases the lock taken for an event, and wakes up the server thread if the outbox was empty.
+     */
+    private void end() {
+        boolean wake = wakeup;
+        wakeup = false;
+        lock.unlock();
+        if (wake) selector.wakeup();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(5);
+            cards[slot] = card;
+            out.put(PLACE_CARD).putShort((short) card).putShort((short) slot);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(3);
+            cards[slot] = -1;
+            out.put(REMOVE_CARD).putShort((short) slot);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(5);
+            out.put(PLACE_TOKEN).putShort((short) player).putShort((short) slot);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void removeTokens() {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(1);
+            out.put(REMOVE_TOKENS);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(3);
+            out.put(REMOVE_SLOT_TOKENS).putShort((short) slot);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(5);
+            out.put(REMOVE_TOKEN).putShort((short) player).putShort((short) slot);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(6);
+            out.put(COUNTDOWN).putInt((int) millies).put((byte) (warn ? 1 : 0));
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(5);
+            out.put(ELAPSED).putInt((int) millies);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(7);
+            out.put(FREEZE).putShort((short) player).putInt((int) millies);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(7);
+            scores[player] = score;
+            out.put(SCORE).putShort((short) player).putInt(score);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(3 + 2 * players.length);
+            out.put(WINNERS).putShort((short) players.length);
+            for (int player : players)
+                out.putShort((short) player);
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Sends the last events to the clients (for up to CLOSE_MILLIS), then disconnects them and stops listening.
+     */
+    @Override
+    public void dispose() {
+        closing = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Returns the length of the message at the position of a buffer of messages sent by the server.
+     *
+     * @param in - the buffer (in read mode).
+     * @return - the length of the message in bytes, or -1 if the buffer does not hold the whole message yet.
+     * @throws IllegalArgumentException - if the message type is unknown.
+     */
+    public static int messageLength(ByteBuffer in) {
+        if (!in.hasRemaining()) return -1;
+        int p = in.position();
+        int length;
+        switch (in.get(p)) {
+            case WELCOME:
+                length = 9;
+                break;
+            case REMOVE_TOKENS:
+                length = 1;
+                break;
+            case REMOVE_CARD:
+            case REMOVE_SLOT_TOKENS:
+                length = 3;
+                break;
+            case PLACE_CARD:
+            case PLACE_TOKEN:
+            case REMOVE_TOKEN:
+            case ELAPSED:
+                length = 5;
+                break;
+            case COUNTDOWN:
+                length = 6;
+                break;
+            case FREEZE:
+            case SCORE:
+                length = 7;
+                break;
+            case WINNERS:
+                if (in.remaining() < 3) return -1;
+                length = 3 + 2 * in.getShort(p + 1);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown message type " + in.get(p));
+        }
+        return in.remaining() < length ? -1 : length;
+    }
+}
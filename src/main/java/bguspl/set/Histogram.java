@@ -0,0 +1,117 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values (e.g. latencies in nanoseconds) with a bounded relative error, in the
+ * style of HdrHistogram: values below 2^PRECISION have a bucket each, and every larger power of two is split into
+ * 2^PRECISION buckets of equal width, so a value is never off by more than 1 / 2^PRECISION (about 3%) and the whole
+ * range of a long fits in less than 2000 buckets. Recording a value only increments a few counters.
+ */
+public class Histogram {
+
+    /**
+     * The number of bits of every value kept exactly (the rest are rounded to the bucket).
+     */
+    private static final int PRECISION = 5;
+    private static final int SUB_BUCKETS = 1 << PRECISION;
+
+    private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - PRECISION + 1) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value - the value (negative values are recorded as 0).
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    /**
+     * @return - the number of values recorded.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return - the largest value recorded (0 if none).
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return - the average of the values recorded (0 if none).
+     */
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns a value that the given share of the recorded values do not exceed (up to the precision of the buckets).
+     *
+     * @param percentile - the share of the values, between 0 and 100.
+     * @return - the highest value of the bucket the percentile falls in (at most max()), or 0 if there are no values.
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; ++i)
+            total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; ++i) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(highestValue(i), max());
+        }
+        return max();
+    }
+
+    /**
+     * Forgets all the values recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); ++i)
+            counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * @param value - a non-negative value.
+     * @return - the index of the bucket of the value.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - PRECISION;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @param bucket - the index of a bucket.
+     * @return - the highest value in the bucket.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        long highest = ((mantissa + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest; // the last bucket ends at the largest long
+    }
+}
@@ -42,7 +42,8 @@ class InputManager extends KeyAdapter {
         // dispatch the key event to the player according to the key map
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
-        if (player >= 0){
+        // (a computer player ignores the keys, its ai thread is the only one that may press them)
+        if (player >= 0 && players[player] != null){
             logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
             players[player].keyPressed(keyToSlot[keyCode]);
         }
@@ -0,0 +1,146 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A compact binary journal of a game's events, written through a buffered file channel (see JournalReader for reading
+ * and replaying it). The journal starts with a header (MAGIC, VERSION and the wall clock time the game started at),
+ * followed by one record per event: the event's ordinal as a byte, the microseconds since the previous record (taken
+ * from the monotonic System::nanoTime) and the event's arguments, all numbers as unsigned varints. Most records take
+ * 4 to 6 bytes.
+ */
+public class Journal implements Closeable {
+
+    /**
+     * The events recorded in the journal, with the number of arguments each one has.
+     */
+    public enum Event {
+        PLACE_CARD(2),      // card, slot
+        REMOVE_CARD(1),     // slot
+        PLACE_TOKEN(2),     // player, slot
+        REMOVE_TOKEN(2),    // player, slot
+        REMOVE_TOKENS(1),   // slot
+        CLAIM(1),           // player
+        POINT(2),           // player, new score
+        PENALTY(1),         // player
+        WINNER(1);          // player (one record per winner)
+
+        public final int arguments;
+
+        Event(int arguments) {
+            this.arguments = arguments;
+        }
+    }
+
+    public static final int MAGIC = 0x5345544a; // "SETJ"
+    public static final int VERSION = 1;
+
+    /**
+     * A journal that records nothing.
+     */
+    public static final Journal NONE = new Journal();
+
+    /**
+     * The size of the write buffer, and the maximum size of a single record.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_RECORD_SIZE = 1 + 3 * 10;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long lastMicros;
+    private boolean failed;
+
+    private Journal() {
+        channel = null;
+        buffer = null;
+    }
+
+    /**
+     * The class constructor. Creates (or truncates) the journal file and writes its header.
+     *
+     * @param path - the journal file.
+     * @throws IOException - if the file cannot be created.
+     */
+    public Journal(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.putInt(MAGIC).put((byte) VERSION).putLong(System.currentTimeMillis());
+        lastMicros = System.nanoTime() / 1000;
+    }
+
+    /**
+     * @return - true iff events are recorded.
+     */
+    public boolean enabled() {
+        return channel != null;
+    }
+
+    public void record(Event event, int argument) {
+        record(event, argument, 0);
+    }
+
+    /**
+     * Appends an event to the journal (arguments beyond the number the event has are ignored).
+     *
+     * @param event  - the event.
+     * @param first  - the first argument.
+     * @param second - the second argument.
+     */
+    public void record(Event event, int first, int second) {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            if (failed) return;
+            if (buffer.remaining() < MAX_RECORD_SIZE) write();
+            long now = System.nanoTime() / 1000;
+            buffer.put((byte) event.ordinal());
+            putVarLong(now - lastMicros);
+            lastMicros = now;
+            if (event.arguments > 0) putVarLong(first);
+            if (event.arguments > 1) putVarLong(second);
+        } catch (IOException e) {
+            failed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered records and closes the journal file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            if (!failed) write();
+            failed = true; // nothing can be recorded anymore
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a game journal written by Journal, one event at a time, and replays it through a user interface.
+ */
+public class JournalReader {
+
+    private final ByteBuffer buffer;
+    private final long startMillis;
+
+    /**
+     * The current event, its time (in microseconds since the journal was created) and its arguments.
+     */
+    private Journal.Event event;
+    private long micros;
+    private final int[] arguments = new int[2];
+
+    /**
+     * The class constructor. Maps the journal file to memory and reads its header.
+     *
+     * @param path - the journal file.
+     * @throws IOException - if the file cannot be read or is not a journal.
+     */
+    public JournalReader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 13 || buffer.getInt() != Journal.MAGIC)
+            throw new IOException(path + " is not a game journal");
+        int version = buffer.get();
+        if (version != Journal.VERSION)
+            throw new IOException(path + " has an unsupported journal version " + version);
+        startMillis = buffer.getLong();
+    }
+
+    /**
+     * @return - the wall clock time the game started at (in milliseconds since the epoch).
+     */
+    public long startMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Advances to the next event in the journal.
+     *
+     * @return - true iff there was another event (a record cut short by a crash counts as the end of the journal).
+     */
+    public boolean next() {
+        if (!buffer.hasRemaining()) return false;
+        int ordinal = buffer.get();
+        if (ordinal < 0 || ordinal >= Journal.Event.values().length) return false;
+        Journal.Event next = Journal.Event.values()[ordinal];
+        long delta = getVarLong();
+        if (delta < 0) return false;
+        for (int i = 0; i < next.arguments; ++i) {
+            long argument = getVarLong();
+            if (argument < 0) return false;
+            arguments[i] = (int) argument;
+        }
+        event = next;
+        micros += delta;
+        return true;
+    }
+
+    /**
+     * @return - the current event.
+     */
+    public Journal.Event event() {
+        return event;
+    }
+
+    /**
+     * @return - the time of the current event, in microseconds since the journal was created.
+     */
+    public long micros() {
+        return micros;
+    }
+
+    /**
+     * @param index - the index of the argument (less than event().arguments).
+     * @return - the argument of the current event.
+     */
+    public int argument(int index) {
+        return arguments[index];
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @return - the value read, or -1 if the journal ended in the middle of it.
+     */
+    private long getVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            if (!buffer.hasRemaining()) return -1;
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        return -1;
+    }
+
+    /**
+     * Replays the rest of the journal through a user interface.
+     *
+     * @param ui    - the user interface to replay the game on.
+     * @param speed - the speed to replay the game at (1 replays it in real time, 0 or less as fast as possible).
+     */
+    public void replay(UserInterface ui, double speed) throws InterruptedException {
+        List<Integer> winners = new ArrayList<>();
+        long startMicros = micros, startNanos = System.nanoTime();
+        while (next()) {
+            if (speed > 0) {
+                long due = startNanos + (long) ((micros - startMicros) * 1000 / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            switch (event) {
+                case PLACE_CARD: ui.placeCard(arguments[0], arguments[1]); break;
+                case REMOVE_CARD: ui.removeCard(arguments[0]); break;
+                case PLACE_TOKEN: ui.placeToken(arguments[0], arguments[1]); break;
+                case REMOVE_TOKEN: ui.removeToken(arguments[0], arguments[1]); break;
+                case REMOVE_TOKENS: ui.removeTokens(arguments[0]); break;
+                case POINT: ui.setScore(arguments[0], arguments[1]); break;
+                case WINNER: winners.add(arguments[0]); break;
+                default: break; // claims and penalties have nothing to show
+            }
+        }
+        if (!winners.isEmpty()) ui.announceWinner(winners.stream().mapToInt(Integer::intValue).toArray());
+    }
+}
@@ -0,0 +1,181 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives many simulated remote players against a game server (see GameServer) from a single thread, and reports the
+ * throughput of the events received and the latency from a key press to the token event it causes (the time a remote
+ * player waits to see its press on the table). Every client presses a random slot every press period, but only the
+ * clients the server seats press at all (one per HumanPlayers seat, the others only watch), so the server should have as
+ * many human players as there are clients.
+ */
+public class LoadGenerator {
+
+    private final InetSocketAddress address;
+    private final int clients;
+    private final long pressNanos;
+    private final Random random;
+
+    /**
+     * The number of events and bytes received, presses sent, and the nanoseconds from a press to its token event.
+     */
+    private long events;
+    private long bytes;
+    private long presses;
+    private final Histogram pressLatency = new Histogram();
+
+    /**
+     * A simulated remote player.
+     */
+    private static final class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(1 << 16);
+        final ByteBuffer out = ByteBuffer.allocate(GameServer.KEY_LENGTH);
+
+        /**
+         * The id of the player (-1 until welcomed, or if the client only watches).
+         */
+        int player = -1;
+
+        /**
+         * The System::nanoTime of the last press of every slot not seen on the table yet (0 if none).
+         */
+        long[] pressed = new long[0];
+        long nextPress;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * The class constructor.
+     *
+     * @param host        - the host of the game server.
+     * @param port        - the port of the game server.
+     * @param clients     - the number of remote players to simulate.
+     * @param pressMillis - the time between the key presses of every remote player.
+     * @param seed        - the seed of the random presses.
+     */
+    public LoadGenerator(String host, int port, int clients, long pressMillis, long seed) {
+        this.address = new InetSocketAddress(host, port);
+        this.clients = clients;
+        this.pressNanos = TimeUnit.MILLISECONDS.toNanos(pressMillis);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Connects the clients, plays for the given time (or until the server disconnects all of them) and prints out
+     * the throughput and the press latencies.
+     *
+     * @param millis - the time to play in milliseconds.
+     * @throws IOException - if the server cannot be connected to.
+     */
+    public void run(long millis) throws IOException {
+        List<Client> connected = new ArrayList<>(clients);
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < clients; ++i) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.configureBlocking(false);
+                Client client = new Client(channel);
+                channel.register(selector, SelectionKey.OP_READ, client);
+                client.nextPress = System.nanoTime() + (long) (random.nextDouble() * pressNanos);
+                connected.add(client);
+            }
+
+            long start = System.nanoTime();
+            long end = start + TimeUnit.MILLISECONDS.toNanos(millis);
+            long nextPress = start;
+            while (!connected.isEmpty() && System.nanoTime() < end) {
+                long wait = Math.max(1, TimeUnit.NANOSECONDS.toMillis(Math.min(nextPress, end) - System.nanoTime()));
+                selector.select(wait);
+                for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Client client = (Client) key.attachment();
+                    if (key.isValid() && key.isReadable() && !read(client)) {
+                        key.cancel();
+                        client.channel.close();
+                        connected.remove(client);
+                    }
+                }
+
+                long now = System.nanoTime();
+                nextPress = Long.MAX_VALUE;
+                for (Client client : connected) {
+                    if (client.player != -1 && client.nextPress <= now) press(client, now);
+                    nextPress = Math.min(nextPress, client.nextPress);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long seated = connected.stream().filter(c -> c.player != -1).count();
+            for (Client client : connected)
+                client.channel.close();
+
+            System.out.printf("Load: %d clients (%d playing) for %.1f seconds: %d presses (%.0f per second), %d events "
+                            + "received (%.0f per second, %.1f MB per second)%n", clients, seated, seconds, presses,
+                    presses / seconds, events, events / seconds, bytes / seconds / (1 << 20));
+            System.out.printf("Press to token latency (us): count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d%n",
+                    pressLatency.count(), pressLatency.mean() / 1000, pressLatency.percentile(50) / 1000,
+                    pressLatency.percentile(90) / 1000, pressLatency.percentile(99) / 1000,
+                    pressLatency.percentile(99.9) / 1000, pressLatency.max() / 1000);
+        }
+    }
+
+    /**
+     * Reads the messages the server sent to a client.
+     *
+     * @return - false iff the server closed the connection.
+     */
+    private boolean read(Client client) throws IOException {
+        int n = client.channel.read(client.in);
+        if (n < 0) return false;
+        bytes += n;
+        client.in.flip();
+        long now = System.nanoTime();
+        for (int length; (length = GameServer.messageLength(client.in)) != -1; ) {
+            int p = client.in.position();
+            byte type = client.in.get(p);
+            if (type == GameServer.WELCOME) {
+                client.player = client.in.getShort(p + 1);
+                client.pressed = new long[client.in.getShort(p + 5) * client.in.getShort(p + 7)];
+            } else if ((type == GameServer.PLACE_TOKEN || type == GameServer.REMOVE_TOKEN)
+                    && client.in.getShort(p + 1) == client.player) {
+                int slot = client.in.getShort(p + 3);
+                if (client.pressed[slot] != 0) {
+                    pressLatency.record(now - client.pressed[slot]);
+                    client.pressed[slot] = 0;
+                }
+            }
+            ++events;
+            client.in.position(p + length);
+        }
+        client.in.compact();
+        return true;
+    }
+
+    /**
+     * Presses a random slot for a client.
+     */
+    private void press(Client client, long now) throws IOException {
+        int slot = random.nextInt(client.pressed.length);
+        client.out.clear();
+        client.out.put(GameServer.KEY).putShort((short) slot).flip();
+        client.channel.write(client.out); // a few bytes always fit in the socket buffer
+        if (client.pressed[slot] == 0) client.pressed[slot] = now;
+        ++presses;
+        client.nextPress = now + pressNanos;
+    }
+}
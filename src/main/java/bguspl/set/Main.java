@@ -1,11 +1,12 @@
 package bguspl.set;
 
-import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -17,23 +18,51 @@ import java.util.logging.*;
  */
 public class Main {
 
-    private static Dealer dealer;
+    /**
+     * The interactive game and the thread running it (only used to close the game from the user interface).
+     */
+    private static Game game;
     private static Thread mainThread;
 
+    /**
+     * The maximum number of log records waiting to be written to the log file.
+     */
+    private static final int LOG_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The TCP port of the game server (see GameServer).
+     */
+    private static final int DEFAULT_PORT = 7777;
+
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * The name of this run's log file, without the extension (also used for the journal file).
+     */
+    private static String logName;
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
-        if (dealer != null) dealer.terminate();
+        if (game != null) game.terminate();
+        else mainThread.interrupt(); // replaying a journal
         mainThread.join();
     }
 
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
-     * @param args - unused.
+     * @param args - "--simulate [games]" plays the given number of games (default 100) of computer players without a
+     *             user interface or delays, and reports the throughput. "--tournament [games] [parallel]" does the
+     *             same with up to parallel games at once (default: the number of processors). "--replay file
+     *             [speed]" replays a game journal on the user interface at the given speed (default 1, i.e. real time).
+     *             "--serve [port]" plays the game with remote clients in the human players' seats (see GameServer,
+     *             default port 7777). "--load [clients] [seconds] [host] [port] [pressMillis]" drives remote players
+     *             against a game server (see LoadGenerator, defaults: 100 clients, 10 seconds, localhost, 7777, 100).
+     *             "--profile [games] [file]" plays simulated games with the logging and ui work of the real game, and
+     *             writes a summary of their allocations and garbage collections to the file (see AllocationProfiler,
+     *             defaults: 100 games, allocations.txt). Otherwise unused.
      */
     public static void main(String[] args) {
 
@@ -42,44 +71,188 @@ public class Main {
         // create the game environment objects
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
+
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            simulate(args.length > 1 ? Integer.parseInt(args[1]) : 100, 1);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--tournament")) {
+            simulate(args.length > 1 ? Integer.parseInt(args[1]) : 100,
+                    args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors());
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--replay")) {
+            replay(args[1], args.length > 2 ? Double.parseDouble(args[2]) : 1);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--load")) {
+            load(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--profile")) {
+            profile(args.length > 1 ? Integer.parseInt(args[1]) : 100, args.length > 2 ? args[2] : "allocations.txt");
+            return;
+        }
+        boolean serve = args.length > 0 && args[0].equals("--serve");
+
         Config config = new Config(logger, "config.properties");
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
         UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
+        GameServer server = null;
+        if (serve) {
+            try {
+                ui = server = new GameServer(logger, config, players,
+                        args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+            } catch (IOException e) {
+                logger.severe("error starting the game server: " + e.getMessage());
+                System.out.println("Cannot start the game server: " + e.getMessage());
+                for (Handler h : logger.getHandlers()) h.close();
+                return;
+            }
+        } else {
+            try {
+                ui = new UserInterfaceSwing(logger, config, players);
+                if (config.uiFramesPerSecond > 0)
+                    ui = new UserInterfaceBatcher(logger, config, ui, config.uiFramesPerSecond);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                logger.severe("error creating swing user interface: " + e.getMessage());
+                logger.severe("will try to run without user interface");
+                if (config.humanPlayers > 0)
+                    logger.severe("warning: running with human players with no user interface");
+            }
         }
         ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        Journal journal = Journal.NONE;
+        if (config.journal) try {
+            journal = new Journal(Paths.get(logName + ".journal"));
+        } catch (IOException e) {
+            logger.severe("error creating the game journal: " + e.getMessage());
+        }
 
-        // create the game entities
-        Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        Env env = new Env(logger, config, ui, util, journal);
+        env.metrics.register(logger);
+        Thread metricsDump = config.metricsDumpMillis > 0 ? env.metrics.startDump(System.out, config.metricsDumpMillis) : null;
 
-        // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
+        // create the game entities
+        game = new Game(env, players);
 
         try {
-            // shutdown stuff
-            dealerThread.joinWithLog();
+            if (server != null) {
+                System.out.println("Waiting for " + config.humanPlayers + " players on port " + server.port() + "...");
+                server.awaitPlayers();
+            }
+            // start the dealer thread and wait for the game to end, then shutdown stuff
+            game.play();
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            if (metricsDump != null) metricsDump.interrupt();
             if (!xButtonPressed) env.ui.dispose();
-            for (Handler h : logger.getHandlers()) h.flush();
+            if (server != null) System.out.println(server.stats());
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.severe("error writing the game journal: " + e.getMessage());
+            }
+            for (Handler h : logger.getHandlers()) h.close();
+        }
+    }
+
+    /**
+     * Plays headless games of computer players (see Simulation and Tournament).
+     *
+     * @param games    - the number of games to play.
+     * @param parallel - the maximum number of games to play at once (1 plays them one after the other).
+     */
+    private static void simulate(int games, int parallel) {
+        try {
+            Simulation simulation = new Simulation(logger, Config.loadProperties("config.properties", logger));
+            Metrics metrics = simulation.metrics();
+            metrics.register(logger);
+            long dumpMillis = simulation.config().metricsDumpMillis;
+            Thread metricsDump = dumpMillis > 0 ? metrics.startDump(System.out, dumpMillis) : null;
+            if (parallel > 1) new Tournament(simulation, parallel).run(games);
+            else simulation.run(games);
+            if (metricsDump != null) {
+                metricsDump.interrupt();
+                System.out.println(metrics.dump());
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.close();
+        }
+    }
+
+    /**
+     * Profiles the allocations of simulated games (see AllocationProfiler).
+     *
+     * @param games - the number of games to play.
+     * @param file  - the file to write the summary to.
+     */
+    private static void profile(int games, String file) {
+        try {
+            new AllocationProfiler(logger, Config.loadProperties("config.properties", logger)).run(games, Paths.get(file));
+        } catch (IOException e) {
+            logger.severe("error writing the allocation profile: " + e.getMessage());
+            System.out.println("Cannot write the allocation profile: " + e.getMessage());
+        } catch (InterruptedException ignored) {
+        } finally {
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.close();
+        }
+    }
+
+    /**
+     * Drives remote players against a game server (see LoadGenerator).
+     *
+     * @param args - the command line arguments ("--load [clients] [seconds] [host] [port] [pressMillis]").
+     */
+    private static void load(String[] args) {
+        try {
+            new LoadGenerator(args.length > 3 ? args[3] : "localhost",
+                    args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_PORT,
+                    args.length > 1 ? Integer.parseInt(args[1]) : 100,
+                    args.length > 5 ? Long.parseLong(args[5]) : 100, System.nanoTime())
+                    .run(1000 * (args.length > 2 ? Long.parseLong(args[2]) : 10));
+        } catch (IOException e) {
+            logger.severe("error generating load: " + e.getMessage());
+            System.out.println("Cannot generate load: " + e.getMessage());
+        } finally {
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.close();
+        }
+    }
+
+    /**
+     * Replays a game journal (see Journal) on the user interface.
+     *
+     * @param file  - the journal file.
+     * @param speed - the speed to replay the game at (1 replays it in real time, 0 or less as fast as possible).
+     */
+    private static void replay(String file, double speed) {
+        Config config = new Config(logger, "config.properties");
+        UserInterface ui = null;
+        try {
+            ui = new UserInterfaceSwing(logger, config, new Player[config.players]);
+            if (config.uiFramesPerSecond > 0)
+                ui = new UserInterfaceBatcher(logger, config, ui, config.uiFramesPerSecond);
+            new JournalReader(Paths.get(file)).replay(ui, speed);
+            if (config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            logger.severe("error replaying " + file + ": " + e.getMessage());
+            System.out.println("Cannot replay " + file + ": " + e.getMessage());
+        } catch (InterruptedException ignored) {
+        } finally {
+            if (ui != null && !xButtonPressed) ui.dispose();
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.close();
         }
     }
 
@@ -87,11 +260,14 @@ public class Main {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        Handler handler;
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            logName = "./logs/" + format.format(Calendar.getInstance().getTime());
+            // records are written by a background thread, so that logging does not slow down the game threads
+            handler = new AsyncLogHandler(Files.newBufferedWriter(Paths.get(logName + ".log"), StandardCharsets.UTF_8),
+                    LOG_BUFFER_SIZE);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,81 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A clock whose time only moves when advance is called (e.g. by a test), waking up the threads waiting for it. This
+ * lets tests go through minutes of game time in milliseconds, and decide exactly when timers expire.
+ */
+public class ManualClock implements Clock {
+
+    /**
+     * The real time a waiting poll checks its queue at (claims do not advance the clock, so they are not signaled).
+     */
+    private static final long POLL_MILLIS = 1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition advanced = lock.newCondition();
+    private long millis;
+
+    /**
+     * The class constructor.
+     *
+     * @param millis - the initial time in milliseconds.
+     */
+    public ManualClock(long millis) {
+        this.millis = millis;
+    }
+
+    public ManualClock() {
+        this(0);
+    }
+
+    /**
+     * Moves the time forward and wakes up the threads whose wait is over.
+     *
+     * @param millis - the number of milliseconds to move the time by.
+     */
+    public void advance(long millis) {
+        lock.lock();
+        try {
+            this.millis += millis;
+            advanced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long millis() {
+        lock.lock();
+        try {
+            return millis;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        lock.lock();
+        try {
+            long until = this.millis + millis;
+            while (this.millis < until)
+                advanced.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <E> E poll(BlockingQueue<E> queue, long millis) throws InterruptedException {
+        long until = millis() + millis;
+        while (true) {
+            E head = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (head != null || millis() >= until) return head;
+        }
+    }
+}
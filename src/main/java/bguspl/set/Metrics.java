@@ -0,0 +1,349 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Lock-free counters and latency histograms of the game (see Histogram), recorded by the game threads and read through
+ * JMX (see MetricsMBean) or a periodic text dump (see Config::metricsDumpMillis). Latencies are measured with
+ * System::nanoTime, so they are real even when the game runs on a virtual clock.
+ */
+public class Metrics implements MetricsMBean {
+
+    /**
+     * The name the metrics are registered under in the platform MBean server.
+     */
+    public static final String OBJECT_NAME = "bguspl.set:type=Metrics";
+
+    private final LongAdder claims;
+    private final LongAdder points;
+    private final LongAdder penalties;
+    private final LongAdder conflicts;
+    private final LongAdder tokensPlaced;
+    private final LongAdder tokensRemoved;
+    private final LongAdder droppedKeyPresses;
+    private final AtomicLong maxClaimQueueDepth;
+
+    /**
+     * The number of claims waiting for the dealer when a claim is made (including it).
+     */
+    private final Histogram claimQueueDepth;
+
+    /**
+     * The nanoseconds from a claim (see Dealer::declareSet) to its verdict (see Player::point and Player::penalty), of
+     * all the players and of every player.
+     */
+    private final Histogram claimLatency;
+    private final Histogram[] playerClaimLatency;
+
+    /**
+     * The System::nanoTime of every player's pending claim (0 if none), of a single game (see forGame).
+     */
+    private final AtomicLongArray claimTimes;
+
+    /**
+     * The nanoseconds the dealer takes to place cards on the table (see Dealer::placeCardsOnTable).
+     */
+    private final Histogram placeCards;
+
+    /**
+     * The nanoseconds a token is placed or removed in (see Table::placeToken and Table::removeTokenByPlayer).
+     */
+    private final Histogram tokenOperations;
+
+    /**
+     * The class constructor.
+     *
+     * @param players - the number of players.
+     */
+    public Metrics(int players) {
+        claims = new LongAdder();
+        points = new LongAdder();
+        penalties = new LongAdder();
+        conflicts = new LongAdder();
+        tokensPlaced = new LongAdder();
+        tokensRemoved = new LongAdder();
+        droppedKeyPresses = new LongAdder();
+        maxClaimQueueDepth = new AtomicLong();
+        claimQueueDepth = new Histogram();
+        claimLatency = new Histogram();
+        playerClaimLatency = new Histogram[players];
+        for (int i = 0; i < players; ++i)
+            playerClaimLatency[i] = new Histogram();
+        claimTimes = new AtomicLongArray(players);
+        placeCards = new Histogram();
+        tokenOperations = new Histogram();
+    }
+
+    /**
+     * The constructor of the metrics of another game recorded into the same counters and histograms.
+     */
+    private Metrics(Metrics shared) {
+        claims = shared.claims;
+        points = shared.points;
+        penalties = shared.penalties;
+        conflicts = shared.conflicts;
+        tokensPlaced = shared.tokensPlaced;
+        tokensRemoved = shared.tokensRemoved;
+        droppedKeyPresses = shared.droppedKeyPresses;
+        maxClaimQueueDepth = shared.maxClaimQueueDepth;
+        claimQueueDepth = shared.claimQueueDepth;
+        claimLatency = shared.claimLatency;
+        playerClaimLatency = shared.playerClaimLatency;
+        claimTimes = new AtomicLongArray(shared.claimTimes.length());
+        placeCards = shared.placeCards;
+        tokenOperations = shared.tokenOperations;
+    }
+
+    /**
+     * Returns metrics for one more game played at the same time as others (e.g. in a tournament): everything is
+     * recorded into these metrics, but the pending claims are kept per game, since player ids repeat across games.
+     *
+     * @return - the metrics of the game.
+     */
+    public Metrics forGame() {
+        return new Metrics(this);
+    }
+
+    /**
+     * Records a claim of a set.
+     *
+     * @param player     - the id of the player.
+     * @param queueDepth - the number of claims waiting for the dealer (including this one).
+     */
+    public void claimed(int player, int queueDepth) {
+        claimTimes.set(player, System.nanoTime());
+        claims.increment();
+        claimQueueDepth.record(queueDepth);
+        long max = maxClaimQueueDepth.get();
+        while (queueDepth > max && !maxClaimQueueDepth.compareAndSet(max, queueDepth))
+            max = maxClaimQueueDepth.get();
+    }
+
+    /**
+     * Records the verdict on a player's claim, and the time since the claim.
+     *
+     * @param player - the id of the player.
+     * @param point  - true iff the player scored a point (false for a penalty).
+     */
+    public void verdict(int player, boolean point) {
+        long claimed = claimTimes.getAndSet(player, 0);
+        if (claimed != 0) {
+            long latency = System.nanoTime() - claimed;
+            claimLatency.record(latency);
+            playerClaimLatency[player].record(latency);
+        }
+        (point ? points : penalties).increment();
+    }
+
+    /**
+     * Records a claim dropped because it conflicts with a set accepted before it.
+     */
+    public void conflict() {
+        conflicts.increment();
+    }
+
+    /**
+     * Records a key press dropped because the player was too far behind (see Player::keyPressed).
+     */
+    public void droppedKeyPress() {
+        droppedKeyPresses.increment();
+    }
+
+    /**
+     * Records the time the dealer took to place cards on the table.
+     *
+     * @param nanos - the time in nanoseconds.
+     */
+    public void placedCards(long nanos) {
+        placeCards.record(nanos);
+    }
+
+    /**
+     * Records a token operation on the table.
+     *
+     * @param placed - true iff a token was placed (false if removed).
+     * @param nanos  - the time the operation took in nanoseconds.
+     */
+    public void tokenOperation(boolean placed, long nanos) {
+        (placed ? tokensPlaced : tokensRemoved).increment();
+        tokenOperations.record(nanos);
+    }
+
+    @Override
+    public long getClaims() {
+        return claims.sum();
+    }
+
+    @Override
+    public long getPoints() {
+        return points.sum();
+    }
+
+    @Override
+    public long getPenalties() {
+        return penalties.sum();
+    }
+
+    @Override
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    @Override
+    public long getMaxClaimQueueDepth() {
+        return maxClaimQueueDepth.get();
+    }
+
+    @Override
+    public long getTokensPlaced() {
+        return tokensPlaced.sum();
+    }
+
+    @Override
+    public long getTokensRemoved() {
+        return tokensRemoved.sum();
+    }
+
+    @Override
+    public long getDroppedKeyPresses() {
+        return droppedKeyPresses.sum();
+    }
+
+    @Override
+    public double getClaimLatencyMeanMicros() {
+        return claimLatency.mean() / 1000.0;
+    }
+
+    @Override
+    public long getClaimLatencyP50Micros() {
+        return claimLatency.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getClaimLatencyP99Micros() {
+        return claimLatency.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getClaimLatencyP999Micros() {
+        return claimLatency.percentile(99.9) / 1000;
+    }
+
+    @Override
+    public long getClaimLatencyMaxMicros() {
+        return claimLatency.max() / 1000;
+    }
+
+    @Override
+    public long[] getPlayerClaimLatencyP99Micros() {
+        return Arrays.stream(playerClaimLatency).mapToLong(h -> h.percentile(99) / 1000).toArray();
+    }
+
+    @Override
+    public long getPlaceCardsP99Micros() {
+        return placeCards.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getPlaceCardsMaxMicros() {
+        return placeCards.max() / 1000;
+    }
+
+    @Override
+    public long getTokenOperationP99Micros() {
+        return tokenOperations.percentile(99) / 1000;
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder("metrics:")
+                .append(" claims=").append(getClaims())
+                .append(" points=").append(getPoints())
+                .append(" penalties=").append(getPenalties())
+                .append(" conflicts=").append(getConflicts())
+                .append(" tokens placed=").append(getTokensPlaced())
+                .append(" removed=").append(getTokensRemoved())
+                .append(" dropped key presses=").append(getDroppedKeyPresses());
+        sb.append(System.lineSeparator()).append("  claim queue depth:");
+        appendPercentiles(sb, claimQueueDepth, 1);
+        sb.append(System.lineSeparator()).append("  claim latency (us):");
+        appendPercentiles(sb, claimLatency, 1000);
+        for (int i = 0; i < playerClaimLatency.length; ++i) {
+            sb.append(System.lineSeparator()).append("    player ").append(i).append(':');
+            appendPercentiles(sb, playerClaimLatency[i], 1000);
+        }
+        sb.append(System.lineSeparator()).append("  place cards (us):");
+        appendPercentiles(sb, placeCards, 1000);
+        sb.append(System.lineSeparator()).append("  token operation (us):");
+        appendPercentiles(sb, tokenOperations, 1000);
+        return sb.toString();
+    }
+
+    private static void appendPercentiles(StringBuilder sb, Histogram histogram, long unit) {
+        sb.append(" count=").append(histogram.count())
+                .append(" mean=").append(String.format("%.1f", histogram.mean() / unit))
+                .append(" p50=").append(histogram.percentile(50) / unit)
+                .append(" p90=").append(histogram.percentile(90) / unit)
+                .append(" p99=").append(histogram.percentile(99) / unit)
+                .append(" p99.9=").append(histogram.percentile(99.9) / unit)
+                .append(" max=").append(histogram.max() / unit);
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : new LongAdder[]{claims, points, penalties, conflicts, tokensPlaced, tokensRemoved,
+                droppedKeyPresses})
+            counter.reset();
+        maxClaimQueueDepth.set(0);
+        for (Histogram histogram : new Histogram[]{claimQueueDepth, claimLatency, placeCards, tokenOperations})
+            histogram.reset();
+        for (Histogram histogram : playerClaimLatency)
+            histogram.reset();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server (see OBJECT_NAME), replacing metrics registered before.
+     *
+     * @param logger - the logger to report errors to.
+     */
+    public void register(Logger logger) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.severe("error registering the game metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a daemon thread that prints a dump of the metrics periodically, until it is interrupted.
+     *
+     * @param out    - the stream to print to.
+     * @param period - the number of milliseconds between dumps.
+     * @return - the thread.
+     */
+    public Thread startDump(PrintStream out, long period) {
+        Thread thread = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(period);
+                    out.println(dump());
+                }
+            } catch (InterruptedException ignored) {}
+        }, "metrics-dump");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,55 @@
+package bguspl.set;
+
+/**
+ * The management interface of the game metrics (see Metrics), as seen through JMX (e.g. in jconsole). Latencies are
+ * in microseconds.
+ */
+public interface MetricsMBean {
+
+    long getClaims();
+
+    long getPoints();
+
+    long getPenalties();
+
+    long getConflicts();
+
+    long getMaxClaimQueueDepth();
+
+    long getTokensPlaced();
+
+    long getTokensRemoved();
+
+    long getDroppedKeyPresses();
+
+    double getClaimLatencyMeanMicros();
+
+    long getClaimLatencyP50Micros();
+
+    long getClaimLatencyP99Micros();
+
+    long getClaimLatencyP999Micros();
+
+    long getClaimLatencyMaxMicros();
+
+    /**
+     * @return - the 99th percentile of the claim latency of every player.
+     */
+    long[] getPlayerClaimLatencyP99Micros();
+
+    long getPlaceCardsP99Micros();
+
+    long getPlaceCardsMaxMicros();
+
+    long getTokenOperationP99Micros();
+
+    /**
+     * @return - a text summary of all the metrics.
+     */
+    String dump();
+
+    /**
+     * Forgets all the values recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,122 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Runs complete games of computer players without a user interface and without artificial delays, and reports the
+ * number of games played per second (e.g. for balance and load testing).
+ */
+public class Simulation {
+
+    /**
+     * Configuration values replaced in simulations: computer players only, no delays, no hints and no logging.
+     */
+    private static final String[][] overrides = {
+            {"HumanPlayers", "0"},
+            {"TableDelaySeconds", "0"},
+            {"TurnTimeoutWarningSeconds", "0"},
+            {"PointFreezeSeconds", "0"},
+            {"PenaltyFreezeSeconds", "0"},
+            {"EndGamePauseSeconds", "0"},
+            {"ComputerReactionSeconds", "0"},
+            {"RandomSpinMin", "0"},
+            {"RandomSpinMax", "0"},
+            {"Hints", "False"},
+            {"LogLevel", "OFF"}};
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+
+    /**
+     * True iff the games are played as the real game plays them: through UserInterfaceDecorator and with the log level
+     * of the configuration (see AllocationProfiler).
+     */
+    private final boolean realistic;
+
+    /**
+     * The metrics of all the simulated games together.
+     */
+    private final Metrics metrics;
+
+    /**
+     * The class constructor.
+     *
+     * @param logger     - the logger for the simulated games.
+     * @param properties - the game configuration (the values in overrides are replaced).
+     */
+    public Simulation(Logger logger, Properties properties) {
+        this(logger, properties, false);
+    }
+
+    /**
+     * The class constructor.
+     *
+     * @param logger     - the logger for the simulated games.
+     * @param properties - the game configuration (the values in overrides are replaced).
+     * @param realistic  - true to play the games through UserInterfaceDecorator and to keep the log level of the
+     *                   configuration (so that the logging and ui work of the real game is simulated too).
+     */
+    public Simulation(Logger logger, Properties properties, boolean realistic) {
+        Properties simulated = new Properties();
+        simulated.putAll(properties);
+        for (String[] override : overrides)
+            if (!realistic || !override[0].equals("LogLevel")) simulated.setProperty(override[0], override[1]);
+
+        this.logger = logger;
+        this.realistic = realistic;
+        this.config = new Config(logger, simulated);
+        this.util = new UtilImpl(config);
+        this.metrics = new Metrics(config.players);
+    }
+
+    /**
+     * @return - the configuration of the simulated games.
+     */
+    public Config config() {
+        return config;
+    }
+
+    /**
+     * @return - the metrics of all the games simulated so far.
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Plays a single game from start to end, in its own game environment.
+     *
+     * @return - the game that was played.
+     */
+    public Game playGame() throws InterruptedException {
+        UserInterface ui = new UserInterfaceHeadless();
+        if (realistic) ui = new UserInterfaceDecorator(logger, util, ui);
+        Game game = new Game(new Env(logger, config, ui, util, Journal.NONE, Env.clockFor(config), metrics.forGame()));
+        game.play();
+        return game;
+    }
+
+    /**
+     * Plays the given number of games one after the other and prints out the throughput.
+     *
+     * @param games - the number of games to play.
+     */
+    public void run(int games) throws InterruptedException {
+        if (config.players == 0) {
+            System.out.println("Cannot simulate games without computer players (set ComputerPlayers in the config).");
+            return;
+        }
+
+        long sets = 0;
+        long start = System.nanoTime();
+        for (int game = 0; game < games; ++game)
+            sets += Arrays.stream(playGame().scores()).sum();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Simulated %d games of %d players in %.2f seconds: %.2f games per second, %.1f sets per game.%n",
+                games, config.players, seconds, games / seconds, (double) sets / games);
+    }
+}
@@ -0,0 +1,122 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many simulated games at once in one JVM (see Simulation), each with its own game environment, on a bounded
+ * pool of threads, and aggregates their results.
+ */
+public class Tournament {
+
+    /**
+     * The aggregated results of a tournament.
+     */
+    public static class Results {
+
+        /**
+         * The number of games played.
+         */
+        public final int games;
+
+        /**
+         * The time (in nanoseconds) it took to play all the games.
+         */
+        public final long nanos;
+
+        /**
+         * The total points of every player (by player id) over all games.
+         */
+        public final long[] points;
+
+        /**
+         * The number of games every player (by player id) won, ties counting as a win for every winner.
+         */
+        public final long[] wins;
+
+        private Results(int games, long nanos, long[] points, long[] wins) {
+            this.games = games;
+            this.nanos = nanos;
+            this.points = points;
+            this.wins = wins;
+        }
+
+        public double gamesPerSecond() {
+            return games * 1e9 / nanos;
+        }
+    }
+
+    private final Simulation simulation;
+
+    /**
+     * The maximum number of games played at once.
+     */
+    private final int parallel;
+
+    /**
+     * The class constructor.
+     *
+     * @param simulation - the simulation creating the games.
+     * @param parallel   - the maximum number of games to play at once (e.g. the number of processors).
+     */
+    public Tournament(Simulation simulation, int parallel) {
+        this.simulation = simulation;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Plays the given number of games, up to parallel of them at once.
+     *
+     * @param games - the number of games to play.
+     * @return - the aggregated results of all the games.
+     */
+    public Results play(int games) throws InterruptedException {
+        int players = simulation.config().players;
+        long[] points = new long[players];
+        long[] wins = new long[players];
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallel);
+        long start = System.nanoTime();
+        try {
+            List<Future<Game>> results = new ArrayList<>(games);
+            for (int i = 0; i < games; ++i)
+                results.add(executor.submit(simulation::playGame));
+            for (Future<Game> result : results) {
+                Game game = result.get();
+                int[] scores = game.scores();
+                for (int i = 0; i < players; ++i)
+                    points[i] += scores[i];
+                for (int winner : game.winners())
+                    wins[winner]++;
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Results(games, System.nanoTime() - start, points, wins);
+    }
+
+    /**
+     * Plays the given number of games and prints out the throughput and the results of every player.
+     *
+     * @param games - the number of games to play.
+     */
+    public void run(int games) throws InterruptedException {
+        Config config = simulation.config();
+        if (config.players == 0) {
+            System.out.println("Cannot simulate games without computer players (set ComputerPlayers in the config).");
+            return;
+        }
+
+        Results results = play(games);
+        System.out.printf("Played %d games of %d players (up to %d at once) in %.2f seconds: %.2f games per second.%n",
+                results.games, config.players, parallel, results.nanos / 1e9, results.gamesPerSecond());
+        for (int i = 0; i < config.players; ++i)
+            System.out.printf("%s: %d wins, %d points%n", config.playerNames[i], results.wins[i], results.points[i]);
+    }
+}
@@ -0,0 +1,322 @@
+package bguspl.set;
+
+import java.awt.EventQueue;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Batches the updates of a user interface into frames. The game threads only record the latest state of every element
+ * (card, token, score, freeze and the timer), so redundant updates coalesce (e.g. several countdown updates, or a
+ * token placed and removed again, which is not shown at all), and a frame thread applies whatever changed in one batch
+ * on the event dispatch thread per frame (see Config::uiFramesPerSecond). The frame thread waits for every batch to be
+ * applied, so batches never pile up when Swing falls behind, while the game threads never wait for Swing at all.
+ */
+public class UserInterfaceBatcher implements UserInterface {
+
+    /**
+     * The user interface the frames are applied to.
+     */
+    private final UserInterface ui;
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * Guards the pending state below (held only to record or take an update, never while calling the user interface).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The latest state of every element, and whether it changed since the last frame.
+     */
+    private final int[] cards;
+    private final boolean[] cardsChanged;
+    private final boolean[][] tokens;
+    private final boolean[][] tokensChanged;
+    private final int[] scores;
+    private final boolean[] scoresChanged;
+    private final long[] freezes;
+    private final boolean[] freezesChanged;
+    private long countdown;
+    private boolean warn;
+    private boolean countdownChanged;
+    private long elapsed;
+    private boolean elapsedChanged;
+    private int[] winners;
+    private volatile boolean changed;
+
+    /**
+     * The state shown on the user interface, and a copy of the pending state taken for the current frame (both only
+     * used by the event dispatch thread).
+     */
+    private final int[] shownCards;
+    private final boolean[][] shownTokens;
+    private final int[] frameCards;
+    private final boolean[] frameCardsChanged;
+    private final boolean[][] frameTokens;
+    private final boolean[][] frameTokensChanged;
+    private final int[] frameScores;
+    private final boolean[] frameScoresChanged;
+    private final long[] frameFreezes;
+    private final boolean[] frameFreezesChanged;
+
+    /**
+     * The thread that posts a frame every frame period (while there are changes to show).
+     */
+    private final Thread frames;
+
+    /**
+     * The class constructor. Starts the frame thread.
+     *
+     * @param logger - the logger for the frames that fail.
+     * @param config - the game configuration.
+     * @param ui     - the user interface to apply the frames to.
+     * @param fps    - the number of frames per second.
+     */
+    public UserInterfaceBatcher(Logger logger, Config config, UserInterface ui, int fps) {
+        this.ui = ui;
+        this.logger = logger;
+        this.config = config;
+        cards = new int[config.tableSize];
+        cardsChanged = new boolean[config.tableSize];
+        tokens = new boolean[config.players][config.tableSize];
+        tokensChanged = new boolean[config.players][config.tableSize];
+        scores = new int[config.players];
+        scoresChanged = new boolean[config.players];
+        freezes = new long[config.players];
+        freezesChanged = new boolean[config.players];
+        shownCards = new int[config.tableSize];
+        shownTokens = new boolean[config.players][config.tableSize];
+        frameCards = new int[config.tableSize];
+        frameCardsChanged = new boolean[config.tableSize];
+        frameTokens = new boolean[config.players][config.tableSize];
+        frameTokensChanged = new boolean[config.players][config.tableSize];
+        frameScores = new int[config.players];
+        frameScoresChanged = new boolean[config.players];
+        frameFreezes = new long[config.players];
+        frameFreezesChanged = new boolean[config.players];
+        Arrays.fill(cards, -1);
+        Arrays.fill(shownCards, -1);
+
+        long frameMillis = Math.max(1, 1000 / Math.max(1, fps));
+        frames = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(frameMillis);
+                    if (changed) EventQueue.invokeAndWait(this::applyFrame); // one frame at a time
+                } catch (InterruptedException e) {
+                    break;
+                } catch (InvocationTargetException e) { // the next frames are still shown
+                    failed(e);
+                }
+            }
+        }, "ui-frames");
+        frames.setDaemon(true);
+        frames.start();
+    }
+
+    /**
+     * Takes the changes recorded since the last frame and applies them to the user interface: cards first, then
+     * tokens, scores, freezes and the timer, and the winners last. Elements whose state did not change (e.g. a token
+     * placed and removed within the frame) are skipped.
+     */
+    private void applyFrame() {
+        long frameCountdown = 0, frameElapsed = 0;
+        boolean frameWarn = false, frameCountdownChanged, frameElapsedChanged;
+        int[] frameWinners;
+        lock.lock();
+        try {
+            changed = false;
+            take(cards, cardsChanged, frameCards, frameCardsChanged);
+            for (int player = 0; player < tokens.length; ++player)
+                take(tokens[player], tokensChanged[player], frameTokens[player], frameTokensChanged[player]);
+            take(scores, scoresChanged, frameScores, frameScoresChanged);
+            take(freezes, freezesChanged, frameFreezes, frameFreezesChanged);
+            frameCountdownChanged = countdownChanged;
+            if (countdownChanged) {
+                frameCountdown = countdown;
+                frameWarn = warn;
+                countdownChanged = false;
+            }
+            frameElapsedChanged = elapsedChanged;
+            if (elapsedChanged) {
+                frameElapsed = elapsed;
+                elapsedChanged = false;
+            }
+            frameWinners = winners;
+            winners = null;
+        } finally {
+            lock.unlock();
+        }
+
+        for (int slot = 0; slot < frameCards.length; ++slot)
+            if (frameCardsChanged[slot] && frameCards[slot] != shownCards[slot]) {
+                if (frameCards[slot] == -1) ui.removeCard(slot);
+                else ui.placeCard(frameCards[slot], slot);
+                shownCards[slot] = frameCards[slot];
+            }
+        for (int player = 0; player < frameTokens.length; ++player)
+            for (int slot = 0; slot < frameTokens[player].length; ++slot)
+                if (frameTokensChanged[player][slot] && frameTokens[player][slot] != shownTokens[player][slot]) {
+                    if (frameTokens[player][slot]) ui.placeToken(player, slot);
+                    else ui.removeToken(player, slot);
+                    shownTokens[player][slot] = frameTokens[player][slot];
+                }
+        for (int player = 0; player < frameScores.length; ++player) {
+            if (frameScoresChanged[player]) ui.setScore(player, frameScores[player]);
+            if (frameFreezesChanged[player]) ui.setFreeze(player, frameFreezes[player]);
+        }
+        if (frameCountdownChanged) ui.setCountdown(frameCountdown, frameWarn);
+        if (frameElapsedChanged) ui.setElapsed(frameElapsed);
+        if (frameWinners != null) ui.announceWinner(frameWinners);
+    }
+
+    /**
+     * Copies the pending values of a kind of element to the current frame, and clears their changes.
+     *
+     * @param values        - the pending values (an array of primitives).
+     * @param valuesChanged - whether every pending value changed since the last frame.
+     * @param frame         - the values of the current frame.
+     * @param frameChanged  - whether every value of the current frame changed.
+     */
+    private static void take(Object values, boolean[] valuesChanged, Object frame, boolean[] frameChanged) {
+        System.arraycopy(values, 0, frame, 0, valuesChanged.length);
+        System.arraycopy(valuesChanged, 0, frameChanged, 0, valuesChanged.length);
+        Arrays.fill(valuesChanged, false);
+    }
+
+    /**
+     * Applies the changes recorded so far right away (on the event dispatch thread), and waits for them.
+     */
+    public void flush() {
+        if (EventQueue.isDispatchThread()) applyFrame();
+        else try {
+            EventQueue.invokeAndWait(this::applyFrame);
+        } catch (InvocationTargetException e) {
+            failed(e);
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * @param e - the exception of a frame that failed on the event dispatch thread.
+     */
+    private void failed(InvocationTargetException e) {
+        logger.severe("error applying a user interface frame: " + e.getCause());
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        lock.lock();
+        try {
+            cards[slot] = card;
+            cardsChanged[slot] = changed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        placeCard(-1, slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        setToken(player, slot, true);
+    }
+
+    @Override
+    public void removeTokens() {
+        for (int slot = 0; slot < config.tableSize; ++slot)
+            removeTokens(slot);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        for (int player = 0; player < config.players; ++player)
+            setToken(player, slot, false);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        setToken(player, slot, false);
+    }
+
+    private void setToken(int player, int slot, boolean placed) {
+        lock.lock();
+        try {
+            tokens[player][slot] = placed;
+            tokensChanged[player][slot] = changed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        lock.lock();
+        try {
+            countdown = millies;
+            this.warn = warn;
+            countdownChanged = changed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        lock.lock();
+        try {
+            elapsed = millies;
+            elapsedChanged = changed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        lock.lock();
+        try {
+            freezes[player] = millies;
+            freezesChanged[player] = changed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        lock.lock();
+        try {
+            scores[player] = score;
+            scoresChanged[player] = changed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        lock.lock();
+        try {
+            winners = players.clone();
+            changed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the frame thread, shows the last changes and disposes of the user interface.
+     */
+    @Override
+    public void dispose() {
+        frames.interrupt();
+        flush();
+        ui.dispose();
+    }
+}
@@ -23,6 +23,23 @@ public interface Util {
      */
     int[][] cardsToFeatures(int[] cards);
 
+    /**
+     * Converts a card id to its packed form: each feature takes config.featureSize bits, of which only the bit of its
+     * value is set. Cards can only be packed if config.featureSize * config.featureCount is at most 64.
+     *
+     * @param card - the card id.
+     * @return - the packed card, or 0 if cards cannot be packed in this configuration.
+     */
+    long cardToPacked(int card);
+
+    /**
+     * Checks if an array of packed cards (see cardToPacked method) forms a legal set.
+     *
+     * @param cards - the array of config.featureSize packed cards.
+     * @return - true iff the array forms a legal set.
+     */
+    boolean testPackedSet(long[] cards);
+
     /**
      * Checks if an array of cards forms a legal set.
      *
@@ -40,6 +57,25 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds and returns up to count sets among the first cards of an array (without boxing them into a list).
+     *
+     * @param cards - an array of card ids.
+     * @param size  - the number of cards to look at (from the start of the array).
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    List<int[]> findSets(int[] cards, int size, int count);
+
+    /**
+     * Returns the card that completes a set with the first featureSize - 1 cards of an array.
+     *
+     * @param cards - an array of at least featureSize - 1 distinct card ids.
+     * @return - the completing card id, or -1 if there is none (or the feature size is less than 3, where a set is
+     *           not determined by the rest of its cards).
+     */
+    int completeSet(int[] cards);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -1,7 +1,7 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.IntStream;
@@ -13,8 +13,14 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The precomputed set checking table for the configured feature size and count.
+     */
+    private final CompletionTable completions;
+
     public UtilImpl(Config config) {
         this.config = config;
+        this.completions = new CompletionTable(config);
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -38,44 +44,102 @@ public class UtilImpl implements Util {
         return features;
     }
 
+    @Override
+    public long cardToPacked(int card) {
+        return completions.packed(card);
+    }
+
+    @Override
+    public boolean testPackedSet(long[] cards) {
+        return completions.testPackedSet(cards);
+    }
+
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
-            boolean sameSame = true, butDifferent = true;
-
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
-
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
-
-            if (sameSame == butDifferent) return false;
-        }
-        return true;
+        return completions.testSet(cards);
     }
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
-        LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
+        int[] cards = new int[deck.size()];
+        for (int i = 0; i < cards.length; ++i)
+            cards[i] = deck.get(i);
+        return findSets(cards, cards.length, count);
+    }
+
+    @Override
+    public int completeSet(int[] cards) {
+        return completions.canComplete() ? completions.complete(cards) : -1;
+    }
+
+    @Override
+    public List<int[]> findSets(int[] cards, int size, int count) {
+        int n = size;
+        int[] positions = new int[config.deckSize];
+        Arrays.fill(positions, -1);
+
+        // index every card by its position in the deck, the combinations below need the cards to be distinct
+        boolean distinct = completions.canComplete();
+        for (int i = 0; i < n; ++i) {
+            if (cards[i] >= 0 && cards[i] < config.deckSize) {
+                if (positions[cards[i]] != -1) distinct = false;
+                positions[cards[i]] = i;
+            }
+        }
+        if (!distinct) return findSetsByCombinations(Arrays.copyOf(cards, n), count);
+
+        // pick every combination of featureSize - 1 cards and look up the one card completing it: a set is found
+        // exactly once, at the combination of its first cards in the deck, so sets come in the same order as before
+        List<int[]> sets = new ArrayList<>();
+        int r = config.featureSize - 1;
+        int[] combination = new int[r];
+        int[] chosen = new int[r];
+
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+
+        while (combination[r - 1] < n - 1) {
+            boolean onDeck = true;
+            for (int i = 0; i < r && onDeck; ++i) {
+                chosen[i] = cards[combination[i]];
+                onDeck = chosen[i] >= 0 && chosen[i] < config.deckSize;
+            }
+            int card = onDeck ? completions.complete(chosen) : -1;
+            if (card != -1 && positions[card] > combination[r - 1]) {
+                int[] set = Arrays.copyOf(chosen, r + 1);
+                set[r] = card;
+                Arrays.sort(set);
+                sets.add(set);
+                if (sets.size() >= count) return sets;
+            }
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t != 0 && combination[t] == n - 1 - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return sets;
+    }
+
+    /**
+     * Finds sets by testing every combination of featureSize cards (used when the cards are not distinct or sets
+     * cannot be completed, see CompletionTable::canComplete).
+     */
+    private List<int[]> findSetsByCombinations(int[] deck, int count) {
+        List<int[]> sets = new ArrayList<>();
+        int n = deck.length;
         int r = config.featureSize;
         int[] combination = new int[r];
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
+        while (combination[r - 1] < n) {
+            int[] cards = new int[r];
+            for (int i = 0; i < r; ++i)
+                cards[i] = deck[combination[i]];
+            Arrays.sort(cards);
             if (testSet(cards)) {
                 sets.add(cards);
                 if (sets.size() >= count) return sets;
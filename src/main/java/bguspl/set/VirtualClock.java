@@ -0,0 +1,30 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A clock for a single thread that never waits: sleeping moves the time forward at once, and polling an empty queue
+ * moves it forward by the whole wait. Used in lockstep mode (see Config::lockstep), where the dealer thread plays the
+ * whole game, so the game runs as fast as it can be computed.
+ */
+public class VirtualClock implements Clock {
+
+    private volatile long millis;
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public void sleep(long millis) {
+        if (millis > 0) this.millis += millis;
+    }
+
+    @Override
+    public <E> E poll(BlockingQueue<E> queue, long millis) {
+        E head = queue.poll();
+        if (head == null) sleep(millis);
+        return head;
+    }
+}
@@ -0,0 +1,61 @@
+package bguspl.set;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Creates the game's threads, either as platform threads or as virtual threads (see Config::virtualThreads).
+ * Virtual threads are created through the Java 21 Thread.Builder API when the running JVM has it, so the game still
+ * builds and runs on older JVMs (with platform threads).
+ */
+public final class VirtualThreads {
+
+    /**
+     * Thread.ofVirtual().name(name).unstarted(task), or null if virtual threads are not supported by the JVM.
+     */
+    private static final MethodHandle ofVirtual, name, unstarted;
+
+    static {
+        MethodHandle[] handles = new MethodHandle[3];
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            handles[0] = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualBuilder));
+            handles[1] = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            handles[2] = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+        } catch (ReflectiveOperationException e) {
+            handles = new MethodHandle[3];
+        }
+        ofVirtual = handles[0];
+        name = handles[1];
+        unstarted = handles[2];
+    }
+
+    private VirtualThreads() {}
+
+    /**
+     * @return - true iff the running JVM supports virtual threads.
+     */
+    public static boolean supported() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Creates a new (unstarted) thread.
+     *
+     * @param virtual - true to create a virtual thread (a platform thread is created if they are not supported).
+     * @param task    - the task the thread runs.
+     * @param name    - the name of the thread.
+     * @return - the new thread.
+     */
+    public static Thread create(boolean virtual, Runnable task, String name) {
+        if (!virtual || !supported()) return new Thread(task, name);
+        try {
+            return (Thread) unstarted.invoke(VirtualThreads.name.invoke(ofVirtual.invoke(), name), task);
+        } catch (Throwable e) {
+            throw new IllegalStateException("cannot create virtual thread " + name, e);
+        }
+    }
+}
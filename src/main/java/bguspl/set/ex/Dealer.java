@@ -1,13 +1,11 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.Journal;
 
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.concurrent.TimeUnit;
 import java.util.Random;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,9 +27,19 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * The legal sets left among the cards in the deck and on the table.
+     */
+    private final RemainingSets remainingSets;
+
+    /**
+     * The freezes of the players after the dealer's verdict (see Player::sleepAfterSet).
+     */
+    private final FreezeService freezes;
 
     /**
      * True iff game should be terminated due to an external event.
@@ -48,23 +56,71 @@ public class Dealer implements Runnable {
      */
     private ArrayBlockingQueue<Integer> playersToCheck;
 
-    private int playerToReward;
+    /**
+     * The boxed ids of the players, put in playersToCheck (so claims do not allocate, whatever the number of players).
+     */
+    private final Integer[] ids;
+
+    /**
+     * The claims taken from playersToCheck in one batch (in arrival order).
+     */
+    private final List<Integer> claims;
+
+    /**
+     * The slots of the sets accepted since the table was last refilled (the first rewardedCount arrays, in arrival
+     * order). Accepted sets have no slot in common, so there are at most tableSize / featureSize of them.
+     */
+    private final int[][] rewardedSets;
+    private int rewardedCount;
+
+    /**
+     * The slots and the cards of the claim being checked.
+     */
+    private final int[] claimSlots;
+    private final int[] claimCards;
+
+    /**
+     * True for every slot of the sets in rewardedSets (a later claim on one of these slots conflicts with them).
+     */
+    private final boolean[] rewardedSlots;
+
     private boolean removedAllCards;
-    private long nextSecond = Long.MAX_VALUE;
-    private long nextMilli = Long.MAX_VALUE;
     private boolean warningSeconds=false; 
-    private int[] setSlots;
     public boolean doNothing=true;
 
+    /**
+     * The source of the dealer's random choices (see Config::randomSeed).
+     */
+    private final Random random;
+
+    /**
+     * The ids of the winning players (empty until they are announced).
+     */
+    private volatile int[] winners = new int[0];
+
+    /**
+     * The player that plays first in the next round of lockstep mode (see playRoundLockstep).
+     */
+    private int firstLockstep;
+
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck = new Deck(env.config.deckSize);
+        remainingSets = new RemainingSets(env);
+        freezes = new FreezeService(env, players.length);
         this.playersToCheck = new ArrayBlockingQueue<Integer>(players.length, true);
-        this.playerToReward = -1;
+        this.claims = new ArrayList<>(players.length);
+        ids = new Integer[players.length];
+        for (int i = 0; i < ids.length; ++i)
+            ids[i] = i;
         this.removedAllCards = true;
-        setSlots = new int[env.config.featureSize];
+        rewardedSets = new int[Math.max(1, env.config.tableSize / Math.max(1, env.config.featureSize))][env.config.featureSize];
+        rewardedSlots = new boolean[env.config.tableSize];
+        claimSlots = new int[env.config.featureSize];
+        claimCards = new int[env.config.featureSize];
+        random = new Random(env.config.randomSeed(0));
     }
 
     /**
@@ -73,42 +129,99 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
-        // Creates and starts the player threads
-        for(Player p : players) {
-            p.createPlayerThreadAndStart();
+        if (env.config.lockstep) runLockstep();
+        else {
+            // Creates and starts the player threads
+            for(Player p : players) {
+                p.createPlayerThreadAndStart();
+            }
+            while (!shouldFinish()) {
+                warningSeconds = (reshuffleTime - now() < env.config.turnTimeoutWarningMillis) ? true : false; 
+                placeCardsOnTable();
+                doNothing=false;
+                timerLoop();
+                wakeAllPlayers();
+                updateTimerDisplay(true);
+                doNothing=true;
+                removeAllCardsFromTable();
+            }
         }
-        while (!shouldFinish()) {
-            warningSeconds = (reshuffleTime - System.currentTimeMillis() < env.config.turnTimeoutWarningMillis) ? true : false; 
+        announceWinners();
+        terminate();
+        // players are joined in reverse order to the order they were created in
+        try {
+            for (int i = players.length - 1; i >= 0; i--)
+                players[i].joinPlayerThread();
+        } catch (InterruptedException ignored) {}
+        env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    /**
+     * The main loop of lockstep mode (see Config::lockstep): the dealer thread plays the computer players itself, one
+     * round after the other, until the game ends. The game only depends on the random seed.
+     */
+    private void runLockstep() {
+        while (!shouldFinish())
+            playRoundLockstep();
+    }
+
+    /**
+     * Plays one round of lockstep mode: fills the table if a turn starts, lets the computer players play one after
+     * the other (starting from the next player every round), checks every claim as soon as it is made, and waits for
+     * the computer players' reaction time (on the virtual clock of lockstep mode, so it takes no time). The turn ends
+     * when it times out or there is no set left on the table. Once warmed up, a round allocates nothing.
+     */
+    void playRoundLockstep() {
+        if (doNothing) { // a new turn
             placeCardsOnTable();
             doNothing=false;
-            timerLoop();
-            wakeAllPlayers();
+            reshuffleTime = now() + env.config.turnTimeoutMillis;
+            updateTimerDisplay(false);
+        }
+        if (!terminate && now() < reshuffleTime && table.countSets() > 0) {
+            for (int k = 0; k < players.length && !terminate; k++) {
+                int i = (firstLockstep + k) % players.length;
+                if (!players[i].playLockstep(now())) continue;
+                env.journal.record(Journal.Event.CLAIM, i);
+                env.metrics.claimed(i, 1);
+                handlePlayerToCheck(i);
+                players[i].freezeLockstep(now());
+                removeCardsFromTable();
+                placeCardsOnTable();
+            }
+            firstLockstep = (firstLockstep + 1) % players.length;
+            try {
+                env.clock.sleep(Math.max(1, env.config.computerReactionMillis));
+            } catch (InterruptedException ignored) {}
+            warningSeconds = reshuffleTime - now() <= env.config.turnTimeoutWarningMillis;
+            updateTimerDisplay(false);
+        }
+        if (terminate || now() >= reshuffleTime || table.countSets() == 0) {
             updateTimerDisplay(true);
             doNothing=true;
             removeAllCardsFromTable();
         }
-        announceWinners();
-        env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
     /**
-     * The inner loop of the dealer thread that runs as long as the countdown did not time out.
+     * @return - the current time in milliseconds (see Env::clock).
+     */
+    private long now() {
+        return env.clock.millis();
+    }
+
+    /**
+     * The inner loop of the dealer thread that runs as long as the countdown did not time out and there is a set on
+     * the table (otherwise the cards are reshuffled right away).
      */
     private void timerLoop() {
-        reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+        reshuffleTime = now() + env.config.turnTimeoutMillis;
         updateTimerDisplay(false);
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
-            nextSecond = System.currentTimeMillis() + 1000;
-            nextMilli = System.currentTimeMillis() + 1;
-            warningSeconds = (reshuffleTime - System.currentTimeMillis() <= env.config.turnTimeoutWarningMillis) ? true : false; 
-            playerToReward = -1;
+        while (!terminate && now() < reshuffleTime && table.countSets() > 0) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             removeCardsFromTable();
-            if(deck.size() >= env.config.featureSize)
-                placeCardsOnTable();
-            else
-                terminate();
+            placeCardsOnTable();
         }
     }
 
@@ -121,53 +234,53 @@ public class Dealer implements Runnable {
             p.terminate();
 
         } 
+        freezes.shutdown();
     }
 
     /**
-     * Check if the game should be terminated or the game end conditions are met.
+     * Check if the game should be terminated or the game end conditions are met (i.e. there is no legal set left
+     * among the cards in the deck and on the table).
      *
      * @return true iff the game should be finished.
      */
-    private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+    boolean shouldFinish() {
+        return terminate || remainingSets.isEmpty();
     }
 
     /**
-     * Checks cards should be removed from the table and removes them. Only for threesomes
+     * Checks cards should be removed from the table and removes them (the cards of every set accepted since the table
+     * was last refilled).
      */
     private void removeCardsFromTable() {
-        if(playerToReward != -1)
-        {
-            synchronized(table.slotsWithTokens)
-            {
-                for(int s : setSlots) {
-                    if(table.slotToCard[s]==-1)
-                        System.out.println("Player id: "+playerToReward+ " "+ setSlots[0]+setSlots[1]+setSlots[2]);
-                    table.removeToken(s);
-                    table.removeCard(s);
-                }
+        for (int set = 0; set < rewardedCount; ++set)
+            for (int s : rewardedSets[set]) {
+                int card = table.slotToCard[s];
+                table.removeCard(s);
+                remainingSets.discard(card);
             }
-        }
     }
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
+        long start = System.nanoTime();
         int slotToFill;
-        synchronized (table.slotsWithTokens) {
-            if (playerToReward != -1) {
-                // a set was removed from the table, need to draw new cards, take first in deck and place
-                for (int i = 0; i < env.config.featureSize; i++) {
-                    slotToFill = setSlots[i];
+        if (rewardedCount > 0) {
+            // sets were removed from the table, need to draw new cards, take first in deck and place (while there are any)
+            for (int set = 0; set < rewardedCount; ++set)
+                for (int i = 0; i < rewardedSets[set].length && deck.size() > 0; i++) {
+                    slotToFill = rewardedSets[set][i];
                     table.placeCard(getRandomCardFromDeck(), slotToFill);
                 }
-            }
-            else if (removedAllCards) {
-                placeCardsOnEntireTable();
-                removedAllCards = false;
-            }
+            clearRewardedSets();
+        }
+        else if (removedAllCards) {
+            placeCardsOnEntireTable();
+            removedAllCards = false;
         }
+        else return;
+        env.metrics.placedCards(System.nanoTime() - start);
     }
 
     /**
@@ -178,7 +291,7 @@ public class Dealer implements Runnable {
         int card, slot;
 
         for (int r = 0; r < env.config.rows; r++) {
-            for (int c = 0; c < env.config.columns; c++) {
+            for (int c = 0; c < env.config.columns && deck.size() > 0; c++) {
                 card = getRandomCardFromDeck();
                 slot = r * env.config.columns + c;
                 table.placeCard(card, slot);
@@ -187,34 +300,22 @@ public class Dealer implements Runnable {
     }
 
     private int getRandomCardFromDeck() {
-        int random_idx = new Random().nextInt(deck.size());
-        return deck.remove(random_idx);
+        return deck.draw(random);
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until a player claims a set, the countdown display needs to change or the turn times out. All the claims
+     * pending when the dealer wakes up are checked together (see handleClaims).
      */
     private void sleepUntilWokenOrTimeout() {
-        // try to take out the first element from playersToCheck (=if empty, wait until timeout)
-        warningSeconds = (reshuffleTime - System.currentTimeMillis() <= env.config.turnTimeoutWarningMillis) ? true : false;
+        // try to take out the first element from playersToCheck (=if empty, wait until the next timer event)
+        long now = now();
+        warningSeconds = reshuffleTime - now <= env.config.turnTimeoutWarningMillis;
         Integer pToCheck;
         try {
-            env.logger.warning("Thread " + Thread.currentThread().getName() + " sleepUntilWokenOrTimeout"); 
-            env.logger.warning("Thread " + Thread.currentThread().getName() + " sleepUntilWokenOrTimeout");
-            if(warningSeconds)
-                //pToCheck=playersToCheck.take();
-                pToCheck = playersToCheck.poll(nextMilli-System.currentTimeMillis(), TimeUnit.MILLISECONDS);
-            else
-                pToCheck = playersToCheck.poll(nextSecond - System.currentTimeMillis(), TimeUnit.MILLISECONDS); 
-            env.logger.warning("Thread " + Thread.currentThread().getName() + " pToCheck "+ pToCheck); 
-            if (pToCheck != null) {
-                if(table.thirdChoiceWasMade(pToCheck)) {
-                    env.logger.warning("Thread " + Thread.currentThread().getName() + " thirdChoiceWasMade "+ pToCheck);
-                    handlePlayerToCheck(pToCheck);
-                }
-                else
-                    players[pToCheck].wakeMeUp();
-        }
+            pToCheck = env.clock.poll(playersToCheck, Math.min(nextTimerTick(now), reshuffleTime) - now);
+            if (pToCheck != null)
+                handleClaims(pToCheck);
         }
         catch(NullPointerException ignored) {
             env.logger.warning("Thread " + Thread.currentThread().getName() + " NullPointerException ");
@@ -224,14 +325,62 @@ public class Dealer implements Runnable {
     }
 
     /**
-     * Rewards or penalizes the player.
+     * Returns the next time the countdown display changes: every refresh period during the warning, otherwise when the
+     * whole seconds shown change or the warning starts.
+     *
+     * @param now - the current time in milliseconds.
+     * @return - the time of the next display update in milliseconds.
+     */
+    private long nextTimerTick(long now) {
+        long remaining = reshuffleTime - now;
+        if (remaining <= env.config.turnTimeoutWarningMillis)
+            return now + Math.max(1, env.config.timerRefreshMillis);
+        return Math.min(now + remaining % 1000 + 1, reshuffleTime - env.config.turnTimeoutWarningMillis);
+    }
+
+    /**
+     * Checks a claim together with all the other claims pending in playersToCheck, in arrival order. A claim on a slot
+     * of a set accepted earlier in the batch conflicts with it: its cards are about to be replaced, so the player is
+     * woken up without a verdict, just like a player whose tokens changed since the claim was made.
+     *
+     * @param first - the id of the player whose claim was taken first.
+     */
+    void handleClaims(int first) {
+        claims.clear();
+        claims.add(ids[first]);
+        playersToCheck.drainTo(claims);
+        for (int claim = 0; claim < claims.size(); ++claim) {
+            int pId = claims.get(claim);
+            if (env.logger.isLoggable(Level.WARNING))
+                env.logger.warning("Thread " + Thread.currentThread().getName() + " pToCheck "+ pId);
+            if (table.thirdChoiceWasMade(pId))
+                handlePlayerToCheck(pId);
+            else
+                players[pId].wakeMeUp();
+        }
+    }
+
+    /**
+     * Rewards or penalizes the player, unless the claim conflicts with a set accepted since the table was last
+     * refilled.
      */
     public void handlePlayerToCheck(int pId) {
-        setSlots = Arrays.copyOf(table.slotsWithTokens[pId], table.slotsWithTokens[pId].length);
-        int[] setCards = slotsToCards(setSlots);
+        if (table.tokenSlots(pId, claimSlots) != env.config.featureSize) { // a token was removed since the claim was made
+            players[pId].wakeMeUp();
+            return;
+        }
+        for (int slot : claimSlots)
+            if (rewardedSlots[slot]) { // the card is part of a set accepted earlier
+                env.metrics.conflict();
+                players[pId].wakeMeUp();
+                return;
+            }
+        slotsToCards(claimSlots, claimCards);
 
-        if(env.util.testSet(setCards)) {
-            playerToReward = pId;
+        if(env.util.testSet(claimCards)) {
+            System.arraycopy(claimSlots, 0, rewardedSets[rewardedCount++], 0, claimSlots.length);
+            for (int slot : claimSlots)
+                rewardedSlots[slot] = true;
             updateTimerDisplay(true);
             players[pId].setPointTime(true);
             players[pId].point();
@@ -247,10 +396,17 @@ public class Dealer implements Runnable {
      */
     public int[] slotsToCards(int[] slotsArr) {
         int[] cardsArr = new int[slotsArr.length];
+        slotsToCards(slotsArr, cardsArr);
+        return cardsArr;
+    }
+
+    /**
+     * Copies the cards in an array of slots to an array of cards (without allocating).
+     */
+    private void slotsToCards(int[] slotsArr, int[] cardsArr) {
         for (int i = 0; i < slotsArr.length; i++) {
             cardsArr[i] = table.slotToCard[slotsArr[i]];
         }
-        return cardsArr;
     }
 
     /**
@@ -259,10 +415,10 @@ public class Dealer implements Runnable {
     private void updateTimerDisplay(boolean reset) {
         if (reset) {
             env.ui.setCountdown(env.config.turnTimeoutMillis, false);
-            reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+            reshuffleTime = now() + env.config.turnTimeoutMillis;
         }
         else {
-            env.ui.setCountdown(reshuffleTime - System.currentTimeMillis(), warningSeconds);
+            env.ui.setCountdown(reshuffleTime - now(), warningSeconds);
         }
     }
 
@@ -273,20 +429,31 @@ public class Dealer implements Runnable {
         int slot;
         int card;
     
-        synchronized(table.slotsWithTokens) {
-            for (int r = 0; r < env.config.rows; r++) {
-                for (int c = 0; c < env.config.columns; c++) {
-                    slot = r * env.config.columns + c;
-                    card = table.slotToCard[slot];
-                    table.removeToken(slot);
-                    table.removeCard(slot);
-                    backToDeck(card);
-                }
+        for (int r = 0; r < env.config.rows; r++) {
+            for (int c = 0; c < env.config.columns; c++) {
+                slot = r * env.config.columns + c;
+                if (table.slotToCard[slot] == null || table.slotToCard[slot] == -1)
+                    continue; // emptied by a set when the deck ran out
+                card = table.slotToCard[slot];
+                table.removeCard(slot);
+                backToDeck(card);
             }
-            this.removedAllCards = true;
-            playersToCheck.clear();
-            wakeAllPlayers();
         }
+        this.removedAllCards = true;
+        clearRewardedSets(); // the slots of the sets claimed last are refilled with the rest of the table
+        playersToCheck.clear();
+        wakeAllPlayers();
+    }
+
+    /**
+     * Forgets the sets accepted since the table was last refilled, without refilling it (e.g. for claiming the same set
+     * again in benchmarks).
+     */
+    public void clearRewardedSets() {
+        for (int set = 0; set < rewardedCount; ++set)
+            for (int slot : rewardedSets[set])
+                rewardedSlots[slot] = false;
+        rewardedCount = 0;
     }
 
     private void wakeAllPlayers()
@@ -320,6 +487,9 @@ public class Dealer implements Runnable {
         }
 
         int[] winnersArr = winnersLst.stream().mapToInt(Integer::intValue).toArray();
+        winners = winnersArr;
+        for (int winner : winnersArr)
+            env.journal.record(Journal.Event.WINNER, winner);
         env.ui.announceWinner(winnersArr);
     }
 
@@ -327,8 +497,10 @@ public class Dealer implements Runnable {
      * Gets player that placed 3 tokens and inserts to playersToCheck
      */
     public void declareSet(int playerId) {
+        env.journal.record(Journal.Event.CLAIM, playerId);
+        env.metrics.claimed(playerId, playersToCheck.size() + 1);
         try {
-            this.playersToCheck.put(playerId);
+            this.playersToCheck.put(ids[playerId]);
             }
         catch(InterruptedException ignored){};
     }
@@ -338,9 +510,19 @@ public class Dealer implements Runnable {
         return playersToCheck;
     }
     
+    public FreezeService getFreezes()
+    {
+        return freezes;
+    }
+
     public boolean getTerminate()
     {
         return terminate;
     }
+
+    public int[] getWinners()
+    {
+        return winners.clone();
+    }
     
 }
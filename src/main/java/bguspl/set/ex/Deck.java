@@ -0,0 +1,86 @@
+package bguspl.set.ex;
+
+import java.util.Random;
+
+/**
+ * The cards left in the dealer's deck, kept in an int array in no particular order: a random card is drawn by moving
+ * the last card into its place, and a returned card is added at the end, both in constant time and without boxing.
+ * A bitset of the cards in the deck answers membership queries.
+ *
+ * @inv 0 <= size() <= capacity
+ * @inv contains(card) iff card is one of the first size() entries of cards()
+ */
+public class Deck {
+
+    /**
+     * The cards in the deck (only the first size entries).
+     */
+    private final int[] cards;
+    private int size;
+
+    /**
+     * The cards in the deck as a bitset (bit card % 64 of members[card / 64]).
+     */
+    private final long[] members;
+
+    /**
+     * The class constructor. Creates a full deck.
+     *
+     * @param deckSize - the number of cards in the full deck.
+     */
+    public Deck(int deckSize) {
+        cards = new int[deckSize];
+        members = new long[(deckSize + Long.SIZE - 1) / Long.SIZE];
+        for (int card = 0; card < deckSize; ++card)
+            add(card);
+    }
+
+    /**
+     * @return - the number of cards in the deck.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return (members[card / Long.SIZE] & 1L << card) != 0;
+    }
+
+    /**
+     * Returns the array holding the cards, for reading the cards without copying them (e.g. see Util::findSets).
+     *
+     * @return - the array, whose first size() entries are the cards in the deck (must not be modified).
+     */
+    public int[] cards() {
+        return cards;
+    }
+
+    /**
+     * Removes a random card from the deck.
+     *
+     * @param random - the source of the random choice.
+     * @return - the card drawn.
+     * @pre - size() > 0
+     */
+    public int draw(Random random) {
+        int index = random.nextInt(size);
+        int card = cards[index];
+        cards[index] = cards[--size];
+        members[card / Long.SIZE] &= ~(1L << card);
+        return card;
+    }
+
+    /**
+     * Returns a card to the deck.
+     *
+     * @param card - the card id.
+     * @pre - !contains(card)
+     */
+    public void add(int card) {
+        cards[size++] = card;
+        members[card / Long.SIZE] |= 1L << card;
+    }
+}
@@ -0,0 +1,178 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.VirtualThreads;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the freeze deadlines of all the players. A frozen player thread waits on its own condition, and a single
+ * scheduler thread wakes up on the game clock (see Env::clock) only when a freeze expires or the countdown of the
+ * frozen players is due (once every UPDATE_MILLIS for all of them together), so the number of wakeups grows with the
+ * time that passes, not with the number of frozen players. Every player is released exactly at its deadline.
+ */
+public class FreezeService {
+
+    /**
+     * The time between countdown updates of the frozen players on the ui.
+     */
+    static final long UPDATE_MILLIS = 1000;
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Guards the deadlines below.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The time every player is frozen until (0 if the player is not frozen), and the condition it waits on.
+     */
+    private final long[] until;
+    private final Condition[] released;
+
+    /**
+     * The number of frozen players, and the time of the next countdown update (while there are any).
+     */
+    private int frozen;
+    private long nextUpdate;
+
+    /**
+     * Wakes the scheduler up when a freeze starts (the deadline may be earlier than the one it waits for).
+     */
+    private final BlockingQueue<Integer> started = new LinkedBlockingQueue<>();
+
+    /**
+     * The scheduler thread (started by the first freeze).
+     */
+    private Thread scheduler;
+
+    private volatile boolean shutdown;
+
+    /**
+     * The class constructor.
+     *
+     * @param env     - the game environment object.
+     * @param players - the number of players.
+     */
+    public FreezeService(Env env, int players) {
+        this.env = env;
+        until = new long[players];
+        released = new Condition[players];
+        for (int i = 0; i < players; ++i)
+            released[i] = lock.newCondition();
+    }
+
+    /**
+     * Freezes a player, and waits until the freeze expires. The remaining time is shown on the ui when the freeze
+     * starts and with every countdown update, and 0 is shown when it ends.
+     *
+     * @param player - the id of the player (the calling thread).
+     * @param millis - the freeze time in milliseconds.
+     * @throws InterruptedException - if the player was interrupted (the freeze is cancelled).
+     */
+    public void freeze(int player, long millis) throws InterruptedException {
+        if (millis <= 0 || shutdown) {
+            env.ui.setFreeze(player, 0);
+            return;
+        }
+        lock.lock();
+        try {
+            long now = env.clock.millis();
+            if (frozen++ == 0) nextUpdate = now + UPDATE_MILLIS;
+            until[player] = now + millis;
+            env.ui.setFreeze(player, millis);
+            if (scheduler == null) {
+                scheduler = VirtualThreads.create(env.config.virtualThreads, this::schedule, "freezes");
+                scheduler.start();
+            }
+            started.offer(player);
+            while (until[player] != 0 && !shutdown)
+                released[player].await();
+        } finally {
+            if (until[player] != 0) release(player); // interrupted or shut down
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param player - the id of the player.
+     * @return - true iff the player is frozen.
+     */
+    public boolean isFrozen(int player) {
+        lock.lock();
+        try {
+            return until[player] != 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases all the frozen players and stops the scheduler.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            for (Condition condition : released)
+                condition.signal();
+            if (scheduler != null) scheduler.interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The scheduler thread: releases the players whose freeze expired and updates the countdown of the others, then
+     * waits for the next deadline or update (or for a new freeze).
+     */
+    private void schedule() {
+        try {
+            while (!shutdown) {
+                long next = Long.MAX_VALUE;
+                lock.lock();
+                try {
+                    long now = env.clock.millis();
+                    boolean update = now >= nextUpdate;
+                    for (int player = 0; player < until.length; ++player) {
+                        if (until[player] == 0) continue;
+                        if (until[player] <= now) release(player);
+                        else {
+                            if (update) env.ui.setFreeze(player, until[player] - now);
+                            next = Math.min(next, until[player]);
+                        }
+                    }
+                    if (frozen > 0) {
+                        while (nextUpdate <= now) nextUpdate += UPDATE_MILLIS;
+                        next = Math.min(next, nextUpdate);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                if (next == Long.MAX_VALUE) started.take(); // nobody is frozen, the clock does not matter
+                else env.clock.poll(started, next - env.clock.millis());
+                started.clear();
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Ends the freeze of a player (with the lock held).
+     *
+     * @param player - the id of the player.
+     */
+    private void release(int player) {
+        until[player] = 0;
+        --frozen;
+        env.ui.setFreeze(player, 0);
+        released[player].signal();
+    }
+}
@@ -0,0 +1,146 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free ring buffer of key presses (slots) with a single producer (the event dispatch thread of a human
+ * player, or the thread of a computer player) and a single consumer (the player thread). The producer never blocks:
+ * when the buffer is full, either the new press or the oldest one waiting is dropped (see DropPolicy), and the number
+ * of presses dropped is counted. The consumer parks while the buffer is empty, and the producer unparks it.
+ *
+ * @inv 0 <= size() <= capacity
+ */
+public class KeyBuffer {
+
+    /**
+     * Which press is dropped when a press is offered to a full buffer.
+     */
+    public enum DropPolicy {
+        NEWEST, // the press offered (i.e. presses made while the player is busy are ignored)
+        OLDEST; // the oldest press waiting (i.e. the player catches up with the latest presses)
+
+        /**
+         * @param name - "newest" or "oldest" (in any case).
+         * @return - the policy.
+         */
+        public static DropPolicy parse(String name) {
+            return valueOf(name.trim().toUpperCase());
+        }
+    }
+
+    /**
+     * Returned by poll when the buffer is empty.
+     */
+    public static final int EMPTY = -1;
+
+    private final AtomicIntegerArray presses;
+    private final DropPolicy policy;
+
+    /**
+     * The number of presses taken (or dropped as the oldest) and offered so far: the presses waiting are at indices
+     * head to tail - 1 (modulo the capacity). Only the producer advances tail, and both advance head (by CAS).
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The consumer thread while it is parked in take (null otherwise).
+     */
+    private volatile Thread waiter;
+
+    /**
+     * The class constructor.
+     *
+     * @param capacity - the maximum number of presses waiting.
+     * @param policy   - which press to drop when the buffer is full.
+     */
+    public KeyBuffer(int capacity, DropPolicy policy) {
+        presses = new AtomicIntegerArray(capacity);
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a press without blocking (called by the producer only).
+     *
+     * @param slot - the slot pressed (non-negative).
+     * @return - true iff no press was dropped.
+     */
+    public boolean offer(int slot) {
+        long t = tail.get();
+        boolean dropping = t - head.get() >= presses.length();
+        if (dropping) {
+            if (policy == DropPolicy.NEWEST) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            // evict the oldest press, unless the consumer took it in the meantime
+            long h = t - presses.length();
+            if (head.compareAndSet(h, h + 1)) dropped.incrementAndGet();
+            else dropping = false;
+        }
+        presses.set((int) (t % presses.length()), slot);
+        tail.set(t + 1);
+        Thread w = waiter;
+        if (w != null) LockSupport.unpark(w);
+        return !dropping;
+    }
+
+    /**
+     * Takes the oldest press without blocking (called by the consumer only).
+     *
+     * @return - the slot pressed, or EMPTY if there is none.
+     */
+    public int poll() {
+        while (true) {
+            long h = head.get();
+            if (h >= tail.get()) return EMPTY;
+            int slot = presses.get((int) (h % presses.length()));
+            // the producer may have dropped this press (and reused its index) meanwhile
+            if (head.compareAndSet(h, h + 1)) return slot;
+        }
+    }
+
+    /**
+     * Takes the oldest press, waiting while there is none (called by the consumer only).
+     *
+     * @return - the slot pressed.
+     * @throws InterruptedException - if the consumer is interrupted while waiting.
+     */
+    public int take() throws InterruptedException {
+        while (true) {
+            int slot = poll();
+            if (slot != EMPTY) return slot;
+            waiter = Thread.currentThread();
+            if (isEmpty()) LockSupport.park(this); // the producer unparks after publishing (or we see its press here)
+            waiter = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * @return - the number of presses waiting.
+     */
+    public int size() {
+        long h = head.get();
+        return (int) Math.max(0, tail.get() - h);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() >= presses.length();
+    }
+
+    /**
+     * @return - the number of presses dropped so far.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+}
@@ -3,9 +3,14 @@ package bguspl.set.ex;
 import java.util.logging.Level;
 
 import bguspl.set.Env;
+import bguspl.set.Journal;
 
+import bguspl.set.VirtualThreads;
+
+import java.util.Arrays;
 import java.util.Random;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class manages the players' threads and data
@@ -56,9 +61,9 @@ public class Player implements Runnable {
     private int score;
     
     /**
-     * Incoming Actions (key presses) to player thread 
+     * Incoming Actions (key presses) to player thread (see KeyBuffer)
      */
-    private ArrayBlockingQueue<Integer> keyPresses;
+    private final KeyBuffer keyPresses;
     
     /**
      * Dealer obj.
@@ -67,6 +72,33 @@ public class Player implements Runnable {
 
     private boolean penaltyTime=false;
     private boolean pointTime=false;
+
+    /**
+     * The strategy that decides on the key presses of a computer player (null for a human player).
+     */
+    private final Strategy strategy;
+
+    /**
+     * The slots the strategy decides to press (see Strategy::nextKeyPresses).
+     */
+    private final int[] presses;
+
+    /**
+     * The virtual time until which the player is frozen in lockstep mode.
+     */
+    private long frozenUntil;
+
+    /**
+     * True iff the player declared a set and waits for the dealer's verdict (guarded by verdictLock).
+     */
+    private boolean awaitingVerdict=false;
+
+    /**
+     * The lock and condition the player waits on for the dealer's verdict (a lock rather than a monitor, so a waiting
+     * virtual thread releases its carrier thread).
+     */
+    private final ReentrantLock verdictLock = new ReentrantLock();
+    private final Condition verdict = verdictLock.newCondition();
     
     
     /**
@@ -84,7 +116,9 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer=dealer;
-        keyPresses=new ArrayBlockingQueue<Integer>(env.config.featureSize, true); //we need to change this if we want to support magic numbers!!!!***
+        keyPresses = new KeyBuffer(env.config.featureSize, env.config.keyDropPolicy);
+        strategy = human ? null : Strategy.create(env, table, new Random(env.config.randomSeed(id + 1)));
+        presses = new int[2 * env.config.featureSize];
     }
 
     /**
@@ -102,67 +136,101 @@ public class Player implements Runnable {
                    slotChoice=keyPresses.take();
                 }
             catch(InterruptedException ignored) {};
+            if (slotChoice == -1) continue; // interrupted (e.g. the game was terminated)
 
-            boolean flag=false;
-            synchronized(table.slotsWithTokens[id])
-            {     
-                //check if slot already in array of token
-                for(int i=0;i<table.slotsWithTokens[id].length;i++)
-                {
-                    if(table.slotsWithTokens[id][i]==slotChoice)
-                    {
-                        table.removeTokenByPlayer(id, slotChoice); //remove the token from table 
-                        flag=true;
-                            break;
+            if(toggleToken(slotChoice))
+            {
+                try {
+                    verdictLock.lock();
+                    try {
+                        awaitingVerdict = true;
+                    } finally {
+                        verdictLock.unlock();
                     }
-                }
-            }
-            if((!flag)&&(table.findFreeCellInMatrix(id)!=-1))
-                {
-                    if(!dealer.doNothing)
-                        table.placeToken(id, slotChoice);
-                    if(table.thirdChoiceWasMade(id))
-                    {
-                        try {
-                            dealer.declareSet(id);
-                            synchronized(this)
-                            {
-                                this.wait();
-                            }
-                        }
-                            catch(InterruptedException ignored) {
-                            };
-                        sleepAfterSet();
+                    dealer.declareSet(id);
+                    verdictLock.lock();
+                    try {
+                        while (awaitingVerdict && !terminate)
+                            verdict.await();
+                    } finally {
+                        verdictLock.unlock();
                     }
                 }
+                    catch(InterruptedException ignored) {
+                    };
+                sleepAfterSet();
+            }
         }
+        Thread.interrupted(); // clear a pending interrupt from terminate before joining the AI thread
         if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * Removes the player's token from a slot, or places one there if there is none and the player has tokens left.
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return - true iff a token was placed and the player now has all of its tokens on the table (i.e. claims a set).
+     */
+    private boolean toggleToken(int slot) {
+        //check if slot already has a token of this player, and remove it from table if so
+        boolean flag = table.hasToken(id, slot) && table.removeTokenByPlayer(id, slot);
+        if (flag || table.findFreeCellInMatrix(id) == -1) return false;
+        if (!dealer.doNothing)
+            table.placeToken(id, slot);
+        return table.thirdChoiceWasMade(id);
+    }
+
+    /**
+     * Plays one turn of a computer player in lockstep mode (see Config::lockstep): unless frozen, asks the strategy
+     * which keys to press and presses them, up to the first one that claims a set.
+     *
+     * @param now - the current virtual time in milliseconds.
+     * @return - true iff the player claims a set (the dealer checks it before any other player plays).
+     */
+    boolean playLockstep(long now) {
+        if (human || now < frozenUntil) return false;
+        int count = strategy.nextKeyPresses(id, presses);
+        for (int i = 0; i < count; ++i)
+            if (toggleToken(presses[i])) return true;
+        return false;
+    }
+
+    /**
+     * Freezes the player after the dealer's verdict in lockstep mode (see setPointTime and setPenaltyTime).
+     *
+     * @param now - the current virtual time in milliseconds.
+     */
+    void freezeLockstep(long now) {
+        if (pointTime) frozenUntil = now + env.config.pointFreezeMillis;
+        if (penaltyTime) frozenUntil = now + env.config.penaltyFreezeMillis;
+        pointTime = penaltyTime = false;
+    }
+
+    /**
+     * Creates an additional thread for an AI (computer) player. The main loop of this thread waits for the player's
+     * reaction time, then asks the strategy which keys to press. Presses that do not fit in the buffer of key presses
+     * are left out (the strategy is asked again once the player catches up), and while the player is still busy with
+     * earlier presses (or waits for the dealer) it just waits for another reaction time.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very very smart AI (!)
-        aiThread = new Thread(() -> {
+        aiThread = VirtualThreads.create(env.config.virtualThreads, () -> {
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
-                int random_key_press=new Random().nextInt(12); //generte random integer between 0-11
-                env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + "press " +random_key_press);
+                int count = keyPresses.isEmpty() && !isAwaitingVerdict() ? strategy.nextKeyPresses(id, presses) : 0;
                 try{
-                    if(keyPresses.remainingCapacity()>0)
-                    {
-                        keyPresses.put(random_key_press);
+                    for (int i = 0; i < count; ++i) {
+                        if (keyPresses.isFull()) break;
+                        if (env.logger.isLoggable(Level.INFO))
+                            env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " press " + presses[i]);
+                        keyPresses.offer(presses[i]);
                     }
+                    if (count == 0 || env.config.computerReactionMillis > 0)
+                        env.clock.sleep(Math.max(1, env.config.computerReactionMillis));
+                    else
+                        Thread.yield(); // virtual threads are not time sliced, let the other players run
                 }
                 catch(InterruptedException ignored){}
-                
-                    //keyPressed(); //call keyPressed with random slot
-                // try {
-                //     synchronized (this) { wait(500); }
-                // } catch (InterruptedException ignored) {}
             }
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
         }, "computer-" + id);
@@ -174,24 +242,29 @@ public class Player implements Runnable {
      */
     public void terminate() {
         terminate=true;
+        wakeMeUp();
+        if (playerThread != null) playerThread.interrupt();
+        if (aiThread != null) aiThread.interrupt();
     }
 
     /**
-     * This method is called when a key is pressed.
+     * This method is called when a key is pressed. The buffer of key presses has a single producer: the thread that
+     * calls this method for a human player (the event dispatch thread, or the game server), and the ai thread of a
+     * computer player, so presses of keys mapped to a computer player are ignored.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        //notifyAll on this  if array isnt full
-        if(keyPresses.remainingCapacity()>0)
-        {
-            try {
-                keyPresses.put(slot);
-            }
-            catch(InterruptedException ignored){}
-        }
-        
+        if (!human) return;
+        // never blocks the caller (the event dispatch thread), a press is dropped if the player is too far behind
+        if (!keyPresses.offer(slot)) env.metrics.droppedKeyPress();
+    }
 
+    /**
+     * @return - the number of key presses dropped because the player was too far behind (see KeyBuffer).
+     */
+    public long droppedKeyPresses() {
+        return keyPresses.dropped();
     }
 
     /**
@@ -204,9 +277,9 @@ public class Player implements Runnable {
     {
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
-        synchronized(this) {
-            this.notifyAll();
-        }
+        env.journal.record(Journal.Event.POINT, id, score);
+        env.metrics.verdict(id, true);
+        wakeMeUp();
         env.logger.log(Level.INFO, "Point was given via method point of class player.");
     }
 
@@ -215,10 +288,14 @@ public class Player implements Runnable {
      */
     public void penalty() 
     {
-        env.logger.warning("Thread " + Thread.currentThread().getName() + " penalty ");
+        if (env.logger.isLoggable(Level.WARNING))
+            env.logger.warning("Thread " + Thread.currentThread().getName() + " penalty ");
+        env.journal.record(Journal.Event.PENALTY, id);
+        env.metrics.verdict(id, false);
 
-        synchronized(this) {notifyAll();}
-        env.logger.log(Level.INFO, "Player " + id + " penalty. My slotsWithTokens: " + table.slotsWithTokens[id]);
+        wakeMeUp();
+        if (env.logger.isLoggable(Level.INFO))
+            env.logger.log(Level.INFO, "Player " + id + " penalty. My slotsWithTokens: " + Arrays.toString(table.tokenSlots(id)));
     }
 
     public int score() {
@@ -227,10 +304,29 @@ public class Player implements Runnable {
 
     public void createPlayerThreadAndStart() {
         String threadName = "player" + Integer.toString(id);
-        this.playerThread = new Thread(this, threadName);
+        this.playerThread = VirtualThreads.create(env.config.virtualThreads, this, threadName);
         this.playerThread.start();
     }
 
+    /**
+     * @return - true iff the player declared a set and still waits for the dealer's verdict.
+     */
+    private boolean isAwaitingVerdict() {
+        verdictLock.lock();
+        try {
+            return awaitingVerdict;
+        } finally {
+            verdictLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the player thread (which joins the AI thread of a computer player) to terminate.
+     */
+    public void joinPlayerThread() throws InterruptedException {
+        if (playerThread != null) playerThread.join();
+    }
+
     public void setPointTime(boolean bool)
     {
         pointTime=bool;
@@ -244,35 +340,28 @@ public class Player implements Runnable {
     public void sleepAfterSet()
     {
         if(pointTime){
-            long timePoint=env.config.pointFreezeMillis;
-            timePoint+=System.currentTimeMillis();
-            while(timePoint>System.currentTimeMillis())
-            {
-                env.ui.setFreeze(id, timePoint-System.currentTimeMillis());
-                try{
-                    Thread.sleep(950);
-                }
-                catch(InterruptedException ignore) {}
-            }
-            env.ui.setFreeze(id, 0);
+            freeze(env.config.pointFreezeMillis);
             pointTime=false;
         }
         if(penaltyTime)
         {
-            long timePenalty=env.config.penaltyFreezeMillis;
-            timePenalty+=System.currentTimeMillis();
-            while(timePenalty>System.currentTimeMillis())
-            {
-                env.ui.setFreeze(id, timePenalty-System.currentTimeMillis());
-                try{
-                    Thread.sleep(950); 
-                }
-                catch(InterruptedException e){}
-            }
-            env.ui.setFreeze(id, 0);
+            freeze(env.config.penaltyFreezeMillis);
             penaltyTime=false;
         }
     }
+
+    /**
+     * Freezes the player until the dealer's freeze service releases it (see FreezeService).
+     *
+     * @param millis - the freeze time in milliseconds.
+     */
+    private void freeze(long millis)
+    {
+        try {
+            dealer.getFreezes().freeze(id, millis);
+        }
+        catch(InterruptedException ignored) {}
+    }
     public boolean getTerminate()
     {
         return terminate;
@@ -289,9 +378,12 @@ public class Player implements Runnable {
 
     public void wakeMeUp()
     {
-        synchronized(this)
-        {
-            this.notifyAll();
+        verdictLock.lock();
+        try {
+            awaitingVerdict=false;
+            verdict.signalAll();
+        } finally {
+            verdictLock.unlock();
         }
     }
 }
@@ -0,0 +1,32 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * A strategy that presses a random slot every time.
+ */
+public class RandomStrategy implements Strategy {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The source of the random slots.
+     */
+    private final Random random;
+
+    public RandomStrategy(Env env, Random random) {
+        this.env = env;
+        this.random = random;
+    }
+
+    @Override
+    public int nextKeyPresses(int player, int[] presses) {
+        presses[0] = random.nextInt(env.config.tableSize);
+        return 1;
+    }
+}
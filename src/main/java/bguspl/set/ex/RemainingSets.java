@@ -0,0 +1,140 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+
+/**
+ * Counts the legal sets among the cards that are still in the game (i.e. in the deck or on the table). Cards only
+ * leave the game when a set is claimed, so the count is updated when a card is discarded, by counting the sets that
+ * card formed with the other cards in the game, and the end of the game can be detected in constant time.
+ *
+ * @inv count() >= 0
+ */
+public class RemainingSets {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The cards in the game as a bitset (bit card % 64 of members[card / 64]).
+     */
+    private final long[] members;
+
+    /**
+     * The number of cards in the game.
+     */
+    private int size;
+
+    /**
+     * The number of legal sets among the cards in the game.
+     */
+    private long count;
+
+    /**
+     * Scratch arrays for counting the sets with a card (see setsWith).
+     */
+    private final int[] others;
+    private final int[] combination;
+    private final int[] chosen;
+
+    /**
+     * The class constructor. All the cards of the deck are in the game.
+     *
+     * @param env - the game environment object.
+     */
+    public RemainingSets(Env env) {
+        this.env = env;
+        members = new long[(env.config.deckSize + Long.SIZE - 1) / Long.SIZE];
+        others = new int[env.config.deckSize];
+        combination = new int[Math.max(0, env.config.featureSize - 2)];
+        chosen = new int[Math.max(1, env.config.featureSize - 1)];
+        // add the cards one by one, counting the sets each one forms with the cards added before it
+        for (int card = 0; card < env.config.deckSize; ++card) {
+            count += setsWith(card);
+            members[card / Long.SIZE] |= 1L << card;
+            ++size;
+        }
+    }
+
+    /**
+     * @return - the number of legal sets among the cards in the game.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return - true iff there is no legal set among the cards in the game.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return - true iff the card is in the game.
+     */
+    public boolean contains(int card) {
+        return (members[card / Long.SIZE] & 1L << card) != 0;
+    }
+
+    /**
+     * Removes a card from the game (i.e. a card of a claimed set).
+     *
+     * @param card - the card id.
+     * @post - !contains(card)
+     */
+    public void discard(int card) {
+        if (!contains(card)) return;
+        members[card / Long.SIZE] &= ~(1L << card);
+        --size;
+        count -= setsWith(card);
+    }
+
+    /**
+     * Counts the legal sets a card forms with the other cards in the game. Every combination of featureSize - 2 other
+     * cards (in increasing order) is completed with the card (see Util::completeSet), and counted if the completing
+     * card is in the game and larger than the cards of the combination, so every set is counted once.
+     * This takes O(size) for the usual feature size of 3.
+     *
+     * @param card - the card id (not in the game).
+     * @return - the number of legal sets.
+     */
+    private long setsWith(int card) {
+        int n = 0;
+        for (int c = 0; c < env.config.deckSize; ++c)
+            if (contains(c)) others[n++] = c;
+
+        int r = env.config.featureSize - 2;
+        if (r < 1) {
+            // a set is not determined by the rest of its cards, count the sets with and without the card
+            int[] cards = Arrays.copyOf(others, n + 1);
+            cards[n] = card;
+            return env.util.findSets(cards, n + 1, Integer.MAX_VALUE).size()
+                    - env.util.findSets(others, n, Integer.MAX_VALUE).size();
+        }
+        if (n < r) return 0;
+
+        long sets = 0;
+        chosen[0] = card;
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+        while (true) {
+            for (int i = 0; i < r; ++i)
+                chosen[i + 1] = others[combination[i]];
+            int completing = env.util.completeSet(chosen);
+            if (completing > chosen[r] && completing != card && contains(completing))
+                ++sets;
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t >= 0 && combination[t] == n - r + t) --t;
+            if (t < 0) break;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return sets;
+    }
+}
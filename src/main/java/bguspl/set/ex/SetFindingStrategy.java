@@ -0,0 +1,68 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * A strategy that claims one of the sets on the table (see Table::chooseSet): it first removes the player's tokens that
+ * are not part of the chosen set, then places tokens on the rest of it.
+ */
+public class SetFindingStrategy implements Strategy {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The table the player plays on.
+     */
+    private final Table table;
+
+    /**
+     * The source of the choice between the sets found.
+     */
+    private final Random random;
+
+    /**
+     * The cards and the slots of the set chosen, and the slots of the player's tokens.
+     */
+    private final int[] set;
+    private final int[] setSlots;
+    private final int[] tokens;
+
+    public SetFindingStrategy(Env env, Table table, Random random) {
+        this.env = env;
+        this.table = table;
+        this.random = random;
+        set = new int[env.config.featureSize];
+        setSlots = new int[env.config.featureSize];
+        tokens = new int[env.config.featureSize];
+    }
+
+    @Override
+    public int nextKeyPresses(int player, int[] presses) {
+        // different computer players should not all go after the same set
+        if (!table.chooseSet(random, set)) return 0;
+        for (int i = 0; i < set.length; ++i) {
+            Integer slot = table.cardToSlot[set[i]];
+            if (slot == null || slot < 0) return 0; // the table changed meanwhile
+            setSlots[i] = slot;
+        }
+
+        int tokenCount = table.tokenSlots(player, tokens);
+        int count = 0;
+        for (int i = 0; i < tokenCount; ++i)
+            if (indexOf(setSlots, setSlots.length, tokens[i]) == -1) presses[count++] = tokens[i];
+        for (int slot : setSlots)
+            if (indexOf(tokens, tokenCount, slot) == -1) presses[count++] = slot;
+        return count;
+    }
+
+    private static int indexOf(int[] arr, int length, int value) {
+        for (int i = 0; i < length; i++)
+            if (arr[i] == value) return i;
+        return -1;
+    }
+}
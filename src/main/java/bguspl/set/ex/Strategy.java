@@ -0,0 +1,35 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * This interface is implemented by the strategies computer players use to decide which keys to press.
+ */
+public interface Strategy {
+
+    /**
+     * Decides on the next keys the player should press, given what is currently visible on the table (called by one
+     * thread at a time, and without allocating). This keeps the lockstep rounds allocation-free (see
+     * Dealer::playRoundLockstep); in threaded mode the blocking waits around the call may still allocate.
+     *
+     * @param player  - the id of the player.
+     * @param presses - the array to write the slots to press to, in order (of at least 2 * featureSize entries).
+     * @return - the number of slots to press (0 if there is nothing to do at the moment).
+     */
+    int nextKeyPresses(int player, int[] presses);
+
+    /**
+     * Creates the strategy named by config.computerStrategy.
+     *
+     * @param env    - the environment object.
+     * @param table  - the table the player plays on.
+     * @param random - the source of the strategy's random choices.
+     * @return - the strategy ("random" presses random slots, otherwise claims the sets found on the table).
+     */
+    static Strategy create(Env env, Table table, Random random) {
+        if (env.config.computerStrategy.equalsIgnoreCase("random")) return new RandomStrategy(env, random);
+        return new SetFindingStrategy(env, table, random);
+    }
+}
@@ -1,12 +1,16 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.Journal;
 import bguspl.set.UserInterface;
 
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -33,10 +37,45 @@ public class Table {
     protected final Integer[] cardToSlot; // slot per card (if any)
 
     /**
-     * Matrix represent the player's tokens.
+     * The boxed card ids and slots, stored in slotToCard and cardToSlot (so placing a card does not allocate, however
+     * large the deck is).
      */
-    int [][] slotsWithTokens; // each row represent specific player tokens
+    private final Integer[] boxed;
 
+    /**
+     * The players' tokens (updated without locks, see TokenBoard).
+     */
+    final TokenBoard tokens;
+
+    /**
+     * Taken around every token operation on a slot and its journal record, so that the records of a slot are in the
+     * order of its operations (e.g. a token placed while the dealer clears the slot). Only taken while the game is
+     * journaled (see Journal::enabled), otherwise the tokens stay lock-free.
+     */
+    private final ReentrantLock[] slotLocks;
+
+    /**
+     * The number of times the dealer started and finished removing the card of every slot: odd while a card is being
+     * removed (see removeCard). A token placed while the count changes is taken back (see placeToken), so that no token
+     * is left on an empty slot or on a card its player never chose.
+     */
+    private final AtomicIntegerArray generations;
+
+    /**
+     * The legal sets among the cards on the table: the first setCount arrays of setPool, each one sorted by card id.
+     * The dealer updates them in place on every card move under the write lock, and the computer players read them
+     * with optimistic reads (see chooseSet), so once the pool is large enough neither side allocates.
+     */
+    private final StampedLock setsLock = new StampedLock();
+    private int[][] setPool;
+    private volatile int setCount;
+
+    /**
+     * Scratch arrays of the dealer for finding the sets with a card placed (see addSetsWith).
+     */
+    private final int[] others;
+    private final int[] combination;
+    private final int[] chosen;
 
     /**
      * Constructor for testing.
@@ -50,10 +89,18 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
-        slotsWithTokens=new int [env.config.players] [env.config.featureSize];
-        for (int[] subarr : slotsWithTokens) {
-            Arrays.fill(subarr, -1);
-        }
+        tokens = new TokenBoard(env.config.players, env.config.tableSize, env.config.featureSize);
+        generations = new AtomicIntegerArray(slotToCard.length);
+        slotLocks = new ReentrantLock[env.journal.enabled() ? slotToCard.length : 0];
+        for (int i = 0; i < slotLocks.length; ++i)
+            slotLocks[i] = new ReentrantLock();
+        boxed = new Integer[Math.max(slotToCard.length, cardToSlot.length)];
+        for (int i = 0; i < boxed.length; ++i)
+            boxed[i] = i;
+        setPool = new int[maxSets(slotToCard.length, env.config.featureSize)][env.config.featureSize];
+        others = new int[slotToCard.length];
+        combination = new int[Math.max(0, env.config.featureSize - 2)];
+        chosen = new int[Math.max(1, env.config.featureSize - 1)];
     }
 
     /**
@@ -70,8 +117,7 @@ public class Table {
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        Arrays.stream(getSets()).forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
             int[][] features = env.util.cardsToFeatures(set);
@@ -79,6 +125,169 @@ public class Table {
         });
     }
 
+    /**
+     * @return - the number of legal sets among the cards on the table.
+     */
+    public int countSets() {
+        return setCount;
+    }
+
+    /**
+     * @return - a copy of the legal sets among the cards on the table, each one sorted by card id.
+     */
+    public int[][] getSets() {
+        long stamp = setsLock.readLock();
+        try {
+            int[][] sets = new int[setCount][];
+            for (int i = 0; i < sets.length; ++i)
+                sets[i] = setPool[i].clone();
+            return sets;
+        } finally {
+            setsLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies one of the legal sets on the table, chosen at random, without locking or allocating: the set is read
+     * optimistically and read again if the dealer changed the sets meanwhile. A whole game is allocation-free only in
+     * lockstep mode (see Dealer::playRoundLockstep), since with threads the blocking waits of the players may allocate.
+     *
+     * @param random - the source of the random choice.
+     * @param set    - the array to copy the cards of the set to (of featureSize entries), sorted by card id.
+     * @return - false iff there is no legal set on the table.
+     */
+    public boolean chooseSet(Random random, int[] set) {
+        while (true) {
+            long stamp = setsLock.tryOptimisticRead();
+            int[][] pool = setPool;
+            int count = Math.min(setCount, pool.length);
+            if (count == 0) return false;
+            System.arraycopy(pool[random.nextInt(count)], 0, set, 0, set.length);
+            if (setsLock.validate(stamp)) return true;
+        }
+    }
+
+    /**
+     * Returns the size of the pool of sets, so that it never grows in a game: an upper bound of the number of legal
+     * sets among the cards on a table (any featureSize - 1 cards of a set determine it, and every set has featureSize
+     * such combinations), up to a reasonable size.
+     *
+     * @param tableSize   - the number of slots on the table.
+     * @param featureSize - the number of cards in a set.
+     * @return - the size of the pool.
+     */
+    private static int maxSets(int tableSize, int featureSize) {
+        final int maxPool = 1 << 12;
+        if (featureSize < 2) return maxPool;
+        long combinations = 1;
+        for (int i = 0; i < featureSize - 1 && combinations <= (long) maxPool * featureSize; ++i)
+            combinations = combinations * (tableSize - i) / (i + 1);
+        return (int) Math.max(0, Math.min(combinations / featureSize, maxPool));
+    }
+
+    /**
+     * Appends a set to the sets on the table (with the write lock held), growing the pool if it is full.
+     *
+     * @return - the array of the set to fill in.
+     */
+    private int[] appendSet() {
+        if (setCount == setPool.length) {
+            int[][] pool = Arrays.copyOf(setPool, Math.max(4, 2 * setPool.length));
+            for (int i = setPool.length; i < pool.length; ++i)
+                pool[i] = new int[env.config.featureSize];
+            setPool = pool;
+        }
+        return setPool[setCount++];
+    }
+
+    /**
+     * Adds the sets formed by a card that was just placed on the table and the other cards on it. Every combination of
+     * featureSize - 2 other cards (in increasing slot order) is completed with the card (see Util::completeSet), and
+     * the set is added if the completing card is on a later slot than the combination, so every set is found once.
+     * This takes O(tableSize) for the usual feature size of 3.
+     *
+     * @param card - the card placed.
+     * @param slot - the slot it was placed in.
+     */
+    private void addSetsWith(int card, int slot) {
+        int r = env.config.featureSize - 2;
+        int n = 0;
+        for (int s = 0; s < slotToCard.length; ++s)
+            if (s != slot && slotToCard[s] != null && slotToCard[s] >= 0)
+                others[n++] = s;
+
+        long stamp = setsLock.writeLock();
+        try {
+            if (r < 1) {
+                // a set is not determined by the rest of its cards, look for all the sets with the card
+                int[] cards = new int[n + 1];
+                for (int i = 0; i < n; ++i)
+                    cards[i] = slotToCard[others[i]];
+                cards[n] = card;
+                for (int[] set : env.util.findSets(cards, n + 1, Integer.MAX_VALUE))
+                    if (Arrays.stream(set).anyMatch(c -> c == card)) {
+                        Arrays.sort(set);
+                        System.arraycopy(set, 0, appendSet(), 0, set.length);
+                    }
+            } else if (n >= r) {
+                chosen[0] = card;
+                for (int i = 0; i < r; ++i)
+                    combination[i] = i;
+                while (true) {
+                    for (int i = 0; i < r; ++i)
+                        chosen[i + 1] = slotToCard[others[combination[i]]];
+                    int completing = env.util.completeSet(chosen);
+                    Integer completingSlot = completing < 0 ? null : cardToSlot[completing];
+                    if (completingSlot != null && completingSlot > others[combination[r - 1]] && completingSlot != slot
+                            && slotToCard[completingSlot] != null && slotToCard[completingSlot] == completing) {
+                        int[] set = appendSet();
+                        System.arraycopy(chosen, 0, set, 0, r + 1);
+                        set[r + 1] = completing;
+                        Arrays.sort(set);
+                    }
+
+                    // generate next combination in lexicographic order
+                    int t = r - 1;
+                    while (t >= 0 && combination[t] == n - r + t) --t;
+                    if (t < 0) break;
+                    combination[t]++;
+                    for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+                }
+            }
+        } finally {
+            setsLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the sets with a card that is being removed from the table (the sets left keep their order, and the
+     * arrays of the sets removed are kept in the pool for reuse).
+     *
+     * @param card - the card removed.
+     */
+    private void removeSetsWith(int card) {
+        long stamp = setsLock.writeLock();
+        try {
+            int kept = 0;
+            for (int i = 0; i < setCount; ++i) {
+                int[] set = setPool[i];
+                if (indexOf(set, card) == -1) {
+                    setPool[i] = setPool[kept];
+                    setPool[kept++] = set;
+                }
+            }
+            setCount = kept;
+        } finally {
+            setsLock.unlockWrite(stamp);
+        }
+    }
+
+    private static int indexOf(int[] arr, int value) {
+        for (int i = 0; i < arr.length; i++)
+            if (arr[i] == value) return i;
+        return -1;
+    }
+
     /**
      * Count the number of cards currently on the table.
      *
@@ -100,25 +309,32 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
+        if (env.config.tableDelayMillis > 0) try {
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        cardToSlot[card] = boxed[slot];
+        slotToCard[slot] = boxed[card];
+        addSetsWith(card, slot);
+        env.journal.record(Journal.Event.PLACE_CARD, card, slot);
         env.ui.placeCard(card, slot);
     }
 
     /**
-     * Removes a card from a grid slot on the table.
+     * Removes the tokens and the card from a grid slot on the table.
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
+        generations.incrementAndGet(slot); // no tokens are placed on the slot until the card is removed
+        removeToken(slot);
+        if (env.config.tableDelayMillis > 0) try {
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
+        removeSetsWith(slotToCard[slot]);
         cardToSlot[slotToCard[slot]] = -1;
         slotToCard[slot] = -1;
+        generations.incrementAndGet(slot);
+        env.journal.record(Journal.Event.REMOVE_CARD, slot);
         env.ui.removeCard(slot);
     }
 
@@ -128,15 +344,31 @@ public class Table {
      * @param slot   - the slot on which to place the token.
      */
     public void placeToken(int player, int slot) {
-        synchronized(slotsWithTokens)
-        {
+        long start = System.nanoTime();
+        int generation = generations.get(slot);
+        Integer card = slotToCard[slot];
+        if ((generation & 1) != 0 || card == null || card == -1) return; // the dealer is removing the card
+        boolean placed;
+        lockSlot(slot);
+        try {
+            placed = tokens.place(player, slot);
+            if (placed && generations.get(slot) != generation) {
+                // the dealer started removing the card meanwhile, and may have removed the tokens before this one
+                tokens.remove(player, slot);
+                placed = false;
+            }
+            if (placed) env.journal.record(Journal.Event.PLACE_TOKEN, player, slot);
+        } finally {
+            unlockSlot(slot);
+        }
+        if (placed) {
             env.ui.placeToken(player, slot); //userIterface update
-            int cell=findFreeCellInMatrix(player); //find a free cell to insret the token
-            slotsWithTokens[player][cell]=slot; //add the slot to the slotWithTokens matrix
+            // the dealer removed the token (and the tokens on the ui) meanwhile
+            if (generations.get(slot) != generation) env.ui.removeToken(player, slot);
+            if (env.logger.isLoggable(Level.WARNING))
+                env.logger.warning("Thread " + Thread.currentThread().getName() + " TABLE after placeToken: " + Arrays.toString(tokens.slots(player)));
+            env.metrics.tokenOperation(true, System.nanoTime() - start);
         }
-
-        env.logger.warning("Thread " + Thread.currentThread().getName() + " TABLE after placeToken: "+ slotsWithTokens[player][0]+", "+slotsWithTokens[player][1]+","+slotsWithTokens[player][2]);
-
     }
 
     /**
@@ -146,19 +378,14 @@ public class Table {
      */
     public boolean removeToken(int slot) {
         env.ui.removeTokens(slot);
-        // empty relevant cell in slotsWithTokens (delete non-existing tokens)
-        boolean removed = false;
-        synchronized(slotsWithTokens) {
-            for (int pId = 0; pId < slotsWithTokens.length; pId++) {
-                for (int s = 0; s < slotsWithTokens[pId].length; s++) {
-                    if(slotsWithTokens[pId][s] == slot) {
-                        slotsWithTokens[pId][s] = -1;
-                        removed = true;
-                    }
-                }
-            }
+        lockSlot(slot);
+        try {
+            boolean removed = tokens.removeAll(slot);
+            if (removed) env.journal.record(Journal.Event.REMOVE_TOKENS, slot);
+            return removed;
+        } finally {
+            unlockSlot(slot);
         }
-        return removed;
     }
 
     /**
@@ -168,77 +395,82 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeTokenByPlayer(int player, int slot) {
+        long start = System.nanoTime();
         env.ui.removeToken(player, slot);
-        int slotIdx;
-        env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " trying to obatin access to 1-d array.");
-        synchronized(slotsWithTokens[player]) {
-            slotIdx = indexOf(slotsWithTokens[player], slot);
-            if(slotIdx < 0) {
-                return false;
-            }
-            slotsWithTokens[player][slotIdx] = -1;
-            return true;
+        boolean removed;
+        lockSlot(slot);
+        try {
+            removed = tokens.remove(player, slot);
+            if (removed) env.journal.record(Journal.Event.REMOVE_TOKEN, player, slot);
+        } finally {
+            unlockSlot(slot);
         }
+        if (removed) env.metrics.tokenOperation(false, System.nanoTime() - start);
+        return removed;
+    }
+
+    private void lockSlot(int slot) {
+        if (slotLocks.length > 0) slotLocks[slot].lock();
+    }
+
+    private void unlockSlot(int slot) {
+        if (slotLocks.length > 0) slotLocks[slot].unlock();
     }
 
     /**
-     * Finds the index of the given value in the array. This method returns (-1) for not found.
+     * @return - true iff the player has a token on the slot.
      */
-    private int indexOf(int[] arr, int value)
-    {
-        int index = -1;
-        for (int i = 0; i < arr.length; i++)
-        {
-            if(arr[i] == value) {
-                index = i;
-                return index;
-            }
-        }
-        return index;
+    public boolean hasToken(int player, int slot) {
+        return tokens.has(player, slot);
+    }
+
+    /**
+     * @return - the slots the player has tokens on, in increasing order.
+     */
+    public int[] tokenSlots(int player) {
+        return tokens.slots(player);
+    }
+
+    /**
+     * Copies the slots the player has tokens on to an array (without allocating).
+     *
+     * @param player - the player.
+     * @param slots  - the array to copy the slots to (of at least featureSize entries).
+     * @return - the number of slots copied, in increasing order.
+     */
+    public int tokenSlots(int player, int[] slots) {
+        return tokens.slots(player, slots);
     }
 
     public boolean thirdChoiceWasMade (int playerId)
     {
-        synchronized(slotsWithTokens[playerId])
-        {
-            for(int i=0;i<slotsWithTokens[playerId].length;i++)
-            {
-                if(slotsWithTokens[playerId][i]==-1) //not a token
-                    return false;
-            }
-        }
-        return true;
+        return tokens.isFull(playerId);
     }
 
     public List<Integer> findPlayerWithToken(int slot)
     {
         List<Integer> playersWithToken = new ArrayList<Integer>();
-        for(int i=0;i<slotsWithTokens.length;i++)
-        {
-            for(int  j=0;j<slotsWithTokens[i].length;j++)
-            {
-                if(slotsWithTokens[i][j]==slot)
-                    playersWithToken.add(i);
-            }
-        }
+        for (int player : tokens.players(slot))
+            playersWithToken.add(player);
         return playersWithToken;
     }
 
     public int findFreeCellInMatrix(int player)
     {
-        synchronized(slotsWithTokens[player])
-        {
-            for(int i=0; i<slotsWithTokens[player].length;i++)
-            {
-                if(slotsWithTokens[player][i]==-1)
-                    return i;
-            }
-        }
-        return -1; // Shouldn't get here
+        return tokens.isFull(player) ? -1 : tokens.count(player);
     }
 
+    /**
+     * Returns a snapshot of the players' tokens, one row per player padded with -1.
+     */
     public int [][] getSlotsWithToken()
     {
+        int[][] slotsWithTokens = new int[env.config.players][env.config.featureSize];
+        for (int player = 0; player < slotsWithTokens.length; player++) {
+            Arrays.fill(slotsWithTokens[player], -1);
+            int[] slots = tokens.slots(player);
+            System.arraycopy(slots, 0, slotsWithTokens[player], 0, slots.length);
+        }
         return slotsWithTokens;
     }
 }
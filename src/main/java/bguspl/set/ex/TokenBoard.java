@@ -0,0 +1,222 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class holds the players' tokens on the table without locks: a bitmask of slots for every player and a bitmask
+ * of players for every slot, both updated with atomic operations. Placing and removing a token, counting the tokens
+ * of a player and finding the players with a token on a slot take a constant number of words (one for up to 64
+ * slots or players), regardless of how many players there are.
+ *
+ * @inv 0 <= count(player) <= maxTokens
+ */
+public class TokenBoard {
+
+    /**
+     * The number of players, slots and the maximum number of tokens a player may place.
+     */
+    private final int players;
+    private final int slots;
+    private final int maxTokens;
+
+    /**
+     * The number of 64 bit words in a mask of slots and in a mask of players.
+     */
+    private final int slotWords;
+    private final int playerWords;
+
+    /**
+     * The slots every player has tokens on (bit slot % 64 of playerSlots[player * slotWords + slot / 64]).
+     */
+    private final AtomicLongArray playerSlots;
+
+    /**
+     * The players that have a token on every slot (bit player % 64 of slotPlayers[slot * playerWords + player / 64]),
+     * set before the token is set in playerSlots.
+     */
+    private final AtomicLongArray slotPlayers;
+
+    /**
+     * The number of tokens every player has (reserved before the token is set in playerSlots).
+     */
+    private final AtomicIntegerArray counts;
+
+    /**
+     * The class constructor.
+     *
+     * @param players   - the number of players.
+     * @param slots     - the number of slots on the table.
+     * @param maxTokens - the maximum number of tokens a player may place.
+     */
+    public TokenBoard(int players, int slots, int maxTokens) {
+        this.players = players;
+        this.slots = slots;
+        this.maxTokens = maxTokens;
+        slotWords = (slots + Long.SIZE - 1) / Long.SIZE;
+        playerWords = (players + Long.SIZE - 1) / Long.SIZE;
+        playerSlots = new AtomicLongArray(players * slotWords);
+        slotPlayers = new AtomicLongArray(slots * playerWords);
+        counts = new AtomicIntegerArray(players);
+    }
+
+    /**
+     * Places a token of a player on a slot.
+     *
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot on which to place the token.
+     * @return - true iff the token was placed (i.e. it was not already there and the player had tokens left).
+     */
+    public boolean place(int player, int slot) {
+        int index = player * slotWords + slot / Long.SIZE;
+        long bit = 1L << slot;
+        if ((playerSlots.get(index) & bit) != 0) return false;
+
+        // reserve one of the player's tokens first, so that the player never has more than maxTokens
+        int count;
+        do {
+            count = counts.get(player);
+            if (count >= maxTokens) return false;
+        } while (!counts.compareAndSet(player, count, count + 1));
+
+        // the token is published on the slot first, so that removeAll (which scans the slot) sees it while it is placed
+        int slotIndex = slot * playerWords + player / Long.SIZE;
+        slotPlayers.getAndAccumulate(slotIndex, 1L << player, (word, b) -> word | b);
+        if ((playerSlots.getAndAccumulate(index, bit, (word, b) -> word | b) & bit) != 0) {
+            counts.decrementAndGet(player);
+            return false;
+        }
+        // a removal of the previous token may have cleared the bit on the slot meanwhile
+        slotPlayers.getAndAccumulate(slotIndex, 1L << player, (word, b) -> word | b);
+        return true;
+    }
+
+    /**
+     * Removes a token of a player from a slot.
+     *
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot from which to remove the token.
+     * @return - true iff a token was removed.
+     */
+    public boolean remove(int player, int slot) {
+        long bit = 1L << slot;
+        if ((playerSlots.getAndAccumulate(player * slotWords + slot / Long.SIZE, bit, (word, b) -> word & ~b) & bit) == 0)
+            return false;
+        int index = slot * playerWords + player / Long.SIZE;
+        slotPlayers.getAndAccumulate(index, 1L << player, (word, b) -> word & ~b);
+        // the player may have placed the token again meanwhile, before the bit above was cleared
+        if (has(player, slot)) slotPlayers.getAndAccumulate(index, 1L << player, (word, b) -> word | b);
+        counts.decrementAndGet(player);
+        return true;
+    }
+
+    /**
+     * Removes the tokens of all players from a slot, including the tokens being placed on it meanwhile.
+     *
+     * @param slot - the slot from which to remove the tokens.
+     * @return - true iff any token was removed.
+     */
+    public boolean removeAll(int slot) {
+        boolean removed = false;
+        for (int word = 0; word < playerWords; ++word) {
+            int index = slot * playerWords + word;
+            for (long mask = slotPlayers.get(index); mask != 0; mask &= mask - 1) {
+                int player = word * Long.SIZE + Long.numberOfTrailingZeros(mask);
+                // a player on the slot without a token is in the middle of placing (or removing) it, so wait for it
+                while (true) {
+                    if (remove(player, slot)) {
+                        removed = true;
+                        break;
+                    }
+                    if ((slotPlayers.get(index) & 1L << player) == 0) break;
+                    Thread.yield();
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean has(int player, int slot) {
+        return (playerSlots.get(player * slotWords + slot / Long.SIZE) & 1L << slot) != 0;
+    }
+
+    /**
+     * @return - the number of tokens the player has on the table.
+     */
+    public int count(int player) {
+        return counts.get(player);
+    }
+
+    /**
+     * @return - true iff the player has placed all of its tokens.
+     */
+    public boolean isFull(int player) {
+        return count(player) >= maxTokens;
+    }
+
+    /**
+     * Returns the slots a player has tokens on.
+     *
+     * @param player - the player.
+     * @return - the slots, in increasing order.
+     */
+    public int[] slots(int player) {
+        int[] result = new int[maxTokens];
+        int count = slots(player, result);
+        return count == maxTokens ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Copies the slots a player has tokens on to an array (without allocating).
+     *
+     * @param player - the player.
+     * @param result - the array to copy the slots to (of at least maxTokens entries).
+     * @return - the number of slots copied, in increasing order.
+     */
+    public int slots(int player, int[] result) {
+        int count = 0;
+        for (int word = 0; word < slotWords; ++word)
+            for (long mask = playerSlots.get(player * slotWords + word); mask != 0 && count < maxTokens; mask &= mask - 1)
+                result[count++] = word * Long.SIZE + Long.numberOfTrailingZeros(mask);
+        return count;
+    }
+
+    /**
+     * Returns the players that have a token on a slot.
+     *
+     * @param slot - the slot.
+     * @return - the players, in increasing order of id.
+     */
+    public int[] players(int slot) {
+        int[] result = new int[players];
+        return Arrays.copyOf(result, players(slot, result));
+    }
+
+    /**
+     * Copies the players that have a token on a slot to an array (without allocating).
+     *
+     * @param slot   - the slot.
+     * @param result - the array to copy the players to (of at least as many entries as there are players).
+     * @return - the number of players copied, in increasing order of id.
+     */
+    public int players(int slot, int[] result) {
+        int count = 0;
+        for (int word = 0; word < playerWords; ++word)
+            for (long mask = slotPlayers.get(slot * playerWords + word); mask != 0; mask &= mask - 1) {
+                int player = word * Long.SIZE + Long.numberOfTrailingZeros(mask);
+                if (has(player, slot)) result[count++] = player; // skip a token being removed
+            }
+        return count;
+    }
+
+    /**
+     * @return - the number of slots on the board.
+     */
+    public int slots() {
+        return slots;
+    }
+}
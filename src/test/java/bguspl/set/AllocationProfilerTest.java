@@ -0,0 +1,44 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AllocationProfilerTest {
+
+    @Test
+    void profile_ReportsThreadsCollectionsAndSites() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("ComputerPlayers", "2");
+        properties.put("TurnTimeoutSeconds", "5");
+        properties.put("LogLevel", "ALL");
+        // records are formatted and thrown away, so that the games allocate enough to be sampled
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new StreamHandler(OutputStream.nullOutputStream(), new SimpleFormatter()));
+        String summary = new AllocationProfiler(logger, properties).profile(3);
+
+        assertTrue(summary.startsWith("allocation profile: 3 games of 2 players (sets strategy, log level ALL)"), summary);
+        // the samples are sparse in such a short run, so only the layout is checked
+        String line = System.lineSeparator();
+        assertTrue(summary.matches("(?s).*" + line + "threads:" + line + "  \\S+ +[0-9.]+ [KM]?B .*"), summary);
+        assertTrue(summary.contains(line + "garbage collections:" + line), summary);
+        assertTrue(summary.matches("(?s).*" + line + "top allocation sites:" + line + " +[0-9.]+% .*"), summary);
+        assertFalse(summary.contains("per second"), summary);
+    }
+
+    @Test
+    void bytes_Units() {
+        assertEquals("512 B", AllocationProfiler.bytes(512));
+        assertEquals("1.5 KB", AllocationProfiler.bytes(1536));
+        assertEquals("2.0 MB", AllocationProfiler.bytes(2 << 20));
+    }
+}
@@ -0,0 +1,120 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogHandlerTest {
+
+    private static final Formatter messageOnly = new Formatter() {
+        @Override
+        public String format(LogRecord record) {
+            return record.getMessage() + "\n";
+        }
+    };
+
+    @Test
+    void close_WritesAllRecords() throws InterruptedException {
+        StringWriter out = new StringWriter();
+        AsyncLogHandler handler = new AsyncLogHandler(out, 1 << 16);
+        handler.setFormatter(messageOnly);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            int id = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; ++i)
+                    handler.publish(new LogRecord(Level.INFO, id + ":" + i));
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        handler.close();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(4000, lines.length);
+        // records of a single thread are written in order
+        assertTrue(out.toString().indexOf("2:10\n") < out.toString().indexOf("2:11\n"));
+    }
+
+    /**
+     * A writer that blocks on the first record until it is released.
+     */
+    private static Writer blockingWriter(StringWriter lines, CountDownLatch blocked, CountDownLatch release) {
+        return new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                lines.write(buffer, offset, length);
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    @Test
+    void publish_DropsWhenFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1), release = new CountDownLatch(1);
+        StringWriter lines = new StringWriter();
+        AsyncLogHandler handler = new AsyncLogHandler(blockingWriter(lines, blocked, release), 4);
+        handler.setFormatter(messageOnly);
+
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        blocked.await(); // the writer is stuck writing the first record, the buffer is empty
+        for (int i = 0; i < 10; ++i)
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        release.countDown();
+        handler.close();
+
+        String written = lines.toString();
+        assertTrue(written.contains("record 3\n"));
+        assertTrue(!written.contains("record 4\n"));
+        assertTrue(written.contains("[6 log records dropped]"));
+    }
+
+    @Test
+    void publish_SevereWaitsWhenFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1), release = new CountDownLatch(1);
+        StringWriter lines = new StringWriter();
+        AsyncLogHandler handler = new AsyncLogHandler(blockingWriter(lines, blocked, release), 2);
+        handler.setFormatter(messageOnly);
+
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        blocked.await();
+        handler.publish(new LogRecord(Level.INFO, "r1"));
+        handler.publish(new LogRecord(Level.INFO, "r2")); // the buffer is full
+        Thread severe = new Thread(() -> handler.publish(new LogRecord(Level.SEVERE, "error")));
+        severe.start();
+        severe.join(100);
+        assertTrue(severe.isAlive()); // waits for room instead of overwriting r1
+
+        release.countDown();
+        severe.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(severe.isAlive());
+        Thread closing = new Thread(handler::close);
+        closing.start();
+        closing.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(closing.isAlive());
+
+        assertEquals("first\nr1\nr2\nerror\n", lines.toString());
+    }
+}
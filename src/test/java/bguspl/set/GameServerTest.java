@@ -0,0 +1,107 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class GameServerTest {
+
+    @Mock
+    Player player;
+    @Mock
+    Logger logger;
+    GameServer server;
+    SocketChannel client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "1");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        Config config = new Config(logger, properties);
+        server = new GameServer(logger, config, new Player[]{player, null}, 0);
+        server.placeCard(7, 2); // before the client connects
+        client = SocketChannel.open(new InetSocketAddress("localhost", server.port()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.dispose();
+    }
+
+    /**
+     * Reads the next message the server sent.
+     */
+    private ByteBuffer receive(ByteBuffer in) throws IOException {
+        in.flip();
+        while (GameServer.messageLength(in) == -1) {
+            in.compact();
+            client.read(in);
+            in.flip();
+        }
+        byte[] message = new byte[GameServer.messageLength(in)];
+        in.get(message);
+        in.compact();
+        return ByteBuffer.wrap(message);
+    }
+
+    @Test
+    void connect_WelcomeAndState() throws InterruptedException, IOException {
+        server.awaitPlayers();
+        ByteBuffer in = ByteBuffer.allocate(1024);
+
+        ByteBuffer welcome = receive(in);
+        assertEquals(GameServer.WELCOME, welcome.get());
+        assertEquals(0, welcome.getShort()); // the only human seat
+        assertEquals(2, welcome.getShort());
+        ByteBuffer card = receive(in);
+        assertEquals(GameServer.PLACE_CARD, card.get());
+        assertEquals(7, card.getShort());
+        assertEquals(2, card.getShort());
+        assertEquals(GameServer.SCORE, receive(in).get());
+        assertEquals(GameServer.SCORE, receive(in).get());
+
+        server.placeToken(1, 3);
+        server.announceWinner(new int[]{0, 1});
+        ByteBuffer token = receive(in);
+        assertEquals(GameServer.PLACE_TOKEN, token.get());
+        assertEquals(1, token.getShort());
+        assertEquals(3, token.getShort());
+        ByteBuffer winners = receive(in);
+        assertEquals(GameServer.WINNERS, winners.get());
+        assertEquals(2, winners.getShort());
+        assertEquals(0, winners.getShort());
+        assertEquals(1, winners.getShort());
+    }
+
+    @Test
+    void keyPressed_ForwardedToSeat() throws IOException {
+        ByteBuffer keys = ByteBuffer.allocate(2 * GameServer.KEY_LENGTH);
+        keys.put(GameServer.KEY).putShort((short) 3).put(GameServer.KEY).putShort((short) 9).flip();
+        client.write(keys);
+
+        verify(player, timeout(1000)).keyPressed(3);
+        verify(player, timeout(100).times(0)).keyPressed(9); // not a slot of the table
+    }
+}
@@ -0,0 +1,38 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameTest {
+
+    private static Game lockstepGame(long seed) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("Lockstep", "True");
+        properties.put("RandomSeed", Long.toString(seed));
+        properties.put("ComputerReactionSeconds", "0.5");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("EndGamePauseSeconds", "0");
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        Game game = new Game(new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config)));
+        game.play();
+        return game;
+    }
+
+    @Test
+    void play_LockstepIsReproducible() throws InterruptedException {
+        Game first = lockstepGame(42), second = lockstepGame(42);
+        assertArrayEquals(first.scores(), second.scores());
+        assertArrayEquals(first.winners(), second.winners());
+        assertTrue(Arrays.stream(first.scores()).sum() > 0);
+    }
+}
@@ -0,0 +1,51 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    @Test
+    void bucket_HighestValueBoundsEveryValue() {
+        long[] values = {0, 1, 31, 32, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(Histogram.highestValue(bucket) >= value);
+            assertTrue(bucket == 0 || Histogram.highestValue(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    void percentile_WithinPrecision() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(4);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20); // spread over many powers of two
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.count());
+        assertEquals(values[values.length - 1], histogram.max());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+            long estimate = histogram.percentile(percentile);
+            assertTrue(estimate >= exact && estimate <= exact + exact / 32 + 1, percentile + ": " + estimate + " vs " + exact);
+        }
+    }
+
+    @Test
+    void reset_ForgetsValues() {
+        Histogram histogram = new Histogram();
+        histogram.record(5);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(99));
+    }
+}
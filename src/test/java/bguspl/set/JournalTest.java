@@ -0,0 +1,86 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void next_ReadsRecordedEvents() throws IOException {
+        Path path = directory.resolve("game.journal");
+        try (Journal journal = new Journal(path)) {
+            journal.record(Journal.Event.PLACE_CARD, 80, 11);
+            journal.record(Journal.Event.CLAIM, 3);
+            journal.record(Journal.Event.POINT, 3, 200);
+        }
+
+        JournalReader reader = new JournalReader(path);
+        assertTrue(reader.next());
+        assertEquals(Journal.Event.PLACE_CARD, reader.event());
+        assertEquals(80, reader.argument(0));
+        assertEquals(11, reader.argument(1));
+        long placed = reader.micros();
+        assertTrue(reader.next());
+        assertEquals(Journal.Event.CLAIM, reader.event());
+        assertEquals(3, reader.argument(0));
+        assertTrue(reader.micros() >= placed);
+        assertTrue(reader.next());
+        assertEquals(Journal.Event.POINT, reader.event());
+        assertEquals(200, reader.argument(1));
+        assertFalse(reader.next());
+
+        // header, then 1 byte of event, at least 1 byte of time and 1 or 2 bytes per argument
+        assertTrue(Files.size(path) < 13 + 3 * 6);
+    }
+
+    @Test
+    void replay_CallsUserInterface() throws IOException, InterruptedException {
+        Path path = directory.resolve("game.journal");
+        try (Journal journal = new Journal(path)) {
+            journal.record(Journal.Event.PLACE_CARD, 5, 0);
+            journal.record(Journal.Event.PLACE_TOKEN, 1, 0);
+            journal.record(Journal.Event.REMOVE_TOKEN, 1, 0);
+            journal.record(Journal.Event.PENALTY, 1);
+            journal.record(Journal.Event.REMOVE_TOKENS, 0);
+            journal.record(Journal.Event.REMOVE_CARD, 0);
+            journal.record(Journal.Event.POINT, 0, 1);
+            journal.record(Journal.Event.WINNER, 0);
+        }
+
+        UserInterface ui = mock(UserInterface.class);
+        new JournalReader(path).replay(ui, 0);
+
+        InOrder order = inOrder(ui);
+        order.verify(ui).placeCard(5, 0);
+        order.verify(ui).placeToken(1, 0);
+        order.verify(ui).removeToken(1, 0);
+        order.verify(ui).removeTokens(0);
+        order.verify(ui).removeCard(0);
+        order.verify(ui).setScore(0, 1);
+        order.verify(ui).announceWinner(new int[]{0});
+        verifyNoMoreInteractions(ui);
+    }
+
+    @Test
+    void constructor_RejectsOtherFiles() throws IOException {
+        Path path = directory.resolve("game.log");
+        Files.writeString(path, "[12:00:00.000] [INFO   ] thread main starting.");
+        assertThrows(IOException.class, () -> new JournalReader(path));
+    }
+}
@@ -0,0 +1,55 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    @Test
+    void verdict_RecordsClaimLatency() throws InterruptedException {
+        Metrics metrics = new Metrics(2);
+        metrics.claimed(1, 2);
+        Thread.sleep(5);
+        metrics.verdict(1, false);
+        metrics.verdict(0, true); // no claim was recorded, only counted
+
+        assertEquals(1, metrics.getClaims());
+        assertEquals(1, metrics.getPoints());
+        assertEquals(1, metrics.getPenalties());
+        assertEquals(2, metrics.getMaxClaimQueueDepth());
+        assertTrue(metrics.getClaimLatencyMaxMicros() >= 5000);
+        assertEquals(0, metrics.getPlayerClaimLatencyP99Micros()[0]);
+        assertTrue(metrics.getPlayerClaimLatencyP99Micros()[1] >= 5000);
+    }
+
+    @Test
+    void forGame_KeepsClaimsOfEveryGame() {
+        Metrics metrics = new Metrics(1);
+        Metrics first = metrics.forGame(), second = metrics.forGame();
+        first.claimed(0, 1);
+        second.verdict(0, true); // player 0 of another game, which made no claim
+
+        assertEquals(1, metrics.getClaims());
+        assertEquals(1, metrics.getPoints());
+        assertEquals(0, metrics.getClaimLatencyMaxMicros());
+        first.verdict(0, false);
+        assertEquals(1, metrics.getPenalties());
+        assertTrue(metrics.dump().contains("claim latency (us): count=1 "));
+    }
+
+    @Test
+    void register_ReadableThroughJmx() throws Exception {
+        Metrics metrics = new Metrics(1);
+        metrics.tokenOperation(true, 1000);
+        metrics.register(Logger.getAnonymousLogger());
+
+        Object placed = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(Metrics.OBJECT_NAME), "TokensPlaced");
+        assertEquals(1L, placed);
+    }
+}
@@ -0,0 +1,120 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class UserInterfaceBatcherTest {
+
+    @Mock
+    UserInterface ui;
+    Logger logger;
+    Config config;
+    UserInterfaceBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        logger = Logger.getAnonymousLogger();
+        config = new Config(logger, properties);
+        // frames are applied by flush before the first one is due
+        batcher = new UserInterfaceBatcher(logger, config, ui, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.dispose();
+    }
+
+    @Test
+    void flush_CoalescesUpdates() {
+        for (long millis = 5000; millis > 4000; millis -= 10)
+            batcher.setCountdown(millis, true);
+        batcher.placeToken(1, 3);
+        batcher.removeToken(1, 3);
+        batcher.placeCard(7, 2);
+        batcher.placeToken(0, 2);
+        batcher.setScore(0, 1);
+        batcher.setScore(0, 2);
+        batcher.flush();
+
+        InOrder order = inOrder(ui);
+        order.verify(ui).placeCard(7, 2);
+        order.verify(ui).placeToken(0, 2);
+        order.verify(ui).setScore(0, 2);
+        order.verify(ui).setCountdown(4010, true);
+        verify(ui, never()).placeToken(1, 3);
+        verify(ui, never()).removeToken(anyInt(), anyInt());
+        verifyNoMoreInteractions(ui);
+    }
+
+    @Test
+    void flush_RemovesShownTokensOnly() {
+        batcher.placeToken(0, 1);
+        batcher.flush();
+        batcher.removeTokens(1);
+        batcher.removeCard(1);
+        batcher.flush();
+
+        verify(ui).placeToken(0, 1);
+        verify(ui).removeToken(0, 1);
+        verify(ui, never()).removeToken(1, 1);
+        verify(ui, never()).removeCard(anyInt()); // no card was shown there
+        verifyNoMoreInteractions(ui);
+    }
+
+    @Test
+    void frames_ContinueAfterFailedFrame() {
+        List<String> errors = new CopyOnWriteArrayList<>();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                errors.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        });
+        doThrow(new IllegalStateException("broken")).doNothing().when(ui).placeCard(anyInt(), anyInt());
+        UserInterfaceBatcher fast = new UserInterfaceBatcher(logger, config, ui, 100);
+        try {
+            fast.placeCard(7, 2);
+            verify(ui, timeout(5000)).placeCard(7, 2);
+            fast.placeCard(8, 3);
+            verify(ui, timeout(5000)).placeCard(8, 3); // by the frame thread, which survived the failed frame
+        } finally {
+            fast.dispose();
+        }
+
+        assertEquals(List.of("error applying a user interface frame: java.lang.IllegalStateException: broken"), errors);
+    }
+}
@@ -0,0 +1,163 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    private static Config config(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new Config(Logger.getAnonymousLogger(), properties);
+    }
+
+    /**
+     * A straightforward set check on decoded features, used as the reference.
+     */
+    private static boolean isSet(Util util, int[] cards) {
+        int[][] features = util.cardsToFeatures(cards);
+        for (int i = 0; i < features[0].length; ++i) {
+            int distinct = 0;
+            for (int j = 0; j < cards.length; ++j) {
+                boolean seen = false;
+                for (int k = 0; k < j; ++k)
+                    seen |= features[k][i] == features[j][i];
+                if (!seen) ++distinct;
+            }
+            if (distinct != 1 && distinct != cards.length) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests every combination of cards in lexicographic order, used as the reference.
+     */
+    private static List<int[]> findSets(Util util, List<Integer> deck, int r, int count) {
+        List<int[]> sets = new ArrayList<>();
+        int n = deck.size();
+        for (int mask = 0; mask < 1 << n; ++mask) {
+            if (Integer.bitCount(mask) != r) continue;
+            int[] cards = new int[r];
+            for (int i = 0, j = 0; i < n; ++i)
+                if ((mask & 1 << i) != 0) cards[j++] = deck.get(i);
+            if (isSet(util, cards)) sets.add(cards);
+        }
+        // bit masks do not come in lexicographic order of the indices
+        sets.sort((a, b) -> {
+            for (int i = 0; i < r; ++i)
+                if (deck.indexOf(a[i]) != deck.indexOf(b[i])) return deck.indexOf(a[i]) - deck.indexOf(b[i]);
+            return 0;
+        });
+        sets.forEach(Arrays::sort);
+        return sets.subList(0, Math.min(count, sets.size()));
+    }
+
+    private static void assertFindsSameSets(int featureSize, int featureCount, int deckSize) {
+        Config config = config(featureSize, featureCount);
+        Util util = new UtilImpl(config);
+        Random random = new Random(deckSize);
+        for (int round = 0; round < 20; ++round) {
+            List<Integer> deck = new ArrayList<>();
+            for (int card = 0; card < config.deckSize; ++card)
+                deck.add(card);
+            Collections.shuffle(deck, random);
+            deck = deck.subList(0, deckSize);
+            for (int count : new int[]{1, 3, Integer.MAX_VALUE}) {
+                List<int[]> expected = findSets(util, deck, featureSize, count);
+                List<int[]> actual = util.findSets(deck, count);
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); ++i)
+                    assertArrayEquals(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    private static void assertMatchesReference(int featureSize, int featureCount, long samples) {
+        Config config = config(featureSize, featureCount);
+        Util util = new UtilImpl(config);
+        Random random = new Random(featureSize * 31L + featureCount);
+        int[] cards = new int[featureSize];
+        for (long n = 0; n < samples; ++n) {
+            for (int i = 0; i < cards.length; ++i)
+                cards[i] = random.nextInt(config.deckSize);
+            assertEquals(isSet(util, cards), util.testSet(cards));
+        }
+    }
+
+    @Test
+    void testSet_DefaultConfig() {
+        Util util = new UtilImpl(config(3, 4));
+        assertTrue(util.testSet(new int[]{0, 1, 2}));
+        assertTrue(util.testSet(new int[]{0, 40, 80}));
+        assertFalse(util.testSet(new int[]{0, 1, 3}));
+        assertMatchesReference(3, 4, 100_000);
+    }
+
+    @Test
+    void testSet_OtherConfigs() {
+        assertMatchesReference(3, 5, 100_000);
+        assertMatchesReference(4, 4, 100_000);
+        assertMatchesReference(5, 3, 100_000);
+        assertTrue(new UtilImpl(config(4, 4)).testSet(new int[]{0, 1, 2, 3}));
+        assertTrue(new UtilImpl(config(4, 4)).testSet(new int[]{0, 85, 170, 255}));
+        assertFalse(new UtilImpl(config(4, 4)).testSet(new int[]{0, 1, 2, 4}));
+    }
+
+    @Test
+    void testPackedSet_MatchesTestSet() {
+        for (int[] sizes : new int[][]{{3, 4}, {4, 4}, {5, 3}}) {
+            Config config = config(sizes[0], sizes[1]);
+            Util util = new UtilImpl(config);
+            Random random = new Random(config.deckSize);
+            int[] cards = new int[config.featureSize];
+            long[] packed = new long[config.featureSize];
+            for (int n = 0; n < 100_000; ++n) {
+                for (int i = 0; i < cards.length; ++i)
+                    packed[i] = util.cardToPacked(cards[i] = random.nextInt(config.deckSize));
+                assertEquals(isSet(util, cards), util.testPackedSet(packed));
+            }
+        }
+        // card 5 has the features {0, 1, 2}
+        assertEquals(0b100_010_001L, new UtilImpl(config(3, 3)).cardToPacked(5));
+        Util util = new UtilImpl(config(4, 4));
+        assertTrue(util.testPackedSet(new long[]{util.cardToPacked(0), util.cardToPacked(1), util.cardToPacked(2), util.cardToPacked(3)}));
+        assertFalse(util.testPackedSet(new long[]{util.cardToPacked(0), util.cardToPacked(1), util.cardToPacked(2), 0}));
+    }
+
+    @Test
+    void testSet_CardsNotOnTable() {
+        Util util = new UtilImpl(config(3, 4));
+        assertFalse(util.testSet(new int[]{0, -1, 2}));
+    }
+
+    @Test
+    void findSets_MatchesCombinations() {
+        assertFindsSameSets(3, 4, 12);
+        assertFindsSameSets(3, 4, 15);
+        assertFindsSameSets(3, 5, 14);
+        assertFindsSameSets(4, 3, 14);
+    }
+
+    @Test
+    void findSets_FullDeck() {
+        Util util = new UtilImpl(config(3, 4));
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < 81; ++card)
+            deck.add(card);
+        assertEquals(1080, util.findSets(deck, Integer.MAX_VALUE).size());
+        assertArrayEquals(new int[]{0, 1, 2}, util.findSets(deck, 1).get(0));
+    }
+}
@@ -3,17 +3,26 @@ package bguspl.set.ex;
 import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
+import bguspl.set.UserInterfaceHeadless;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 
 @ExtendWith(MockitoExtension.class)
@@ -77,4 +86,81 @@ class DealerTest {
         }
         assertArrayEquals(numbers,dealer.slotsToCards(numbers));
     }
+
+    @Test
+    void handleClaims_ConflictingClaims()
+    {
+        Env realEnv = new Env(logger, config, ui, new UtilImpl(config));
+        Table realTable = new Table(realEnv);
+        Player[] claimers = {mock(Player.class), mock(Player.class)};
+        Dealer batchDealer = new Dealer(realEnv, realTable, claimers);
+        int[] cards = {0, 1, 2, 4}; // 0, 1 and 2 form a set
+        for (int slot = 0; slot < cards.length; slot++)
+            realTable.placeCard(cards[slot], slot);
+        for (int slot : new int[]{0, 1, 2})
+            realTable.placeToken(0, slot);
+        for (int slot : new int[]{3, 1, 2})
+            realTable.placeToken(1, slot);
+
+        for (int player = 0; player < claimers.length; player++)
+            batchDealer.declareSet(player);
+        batchDealer.handleClaims(batchDealer.getPlayersToCheck().poll());
+
+        verify(claimers[0]).point();
+        verify(claimers[1], never()).point();
+        verify(claimers[1], never()).penalty();
+        verify(claimers[1]).wakeMeUp();
+        assertEquals(0, batchDealer.getPlayersToCheck().size());
+    }
+
+    /**
+     * Creates a lockstep game of computer players without logging or a user interface.
+     */
+    private static Dealer lockstepGame(Player[] players) {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(players.length));
+        properties.put("Lockstep", "True");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("RandomSeed", "7");
+        properties.put("LogLevel", "OFF");
+        Logger silent = Logger.getAnonymousLogger();
+        Config lockstepConfig = new Config(silent, properties);
+        Env lockstepEnv = new Env(silent, lockstepConfig, new UserInterfaceHeadless(), new UtilImpl(lockstepConfig));
+        Table lockstepTable = new Table(lockstepEnv);
+        Dealer lockstepDealer = new Dealer(lockstepEnv, lockstepTable, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(lockstepEnv, lockstepDealer, lockstepTable, i, false);
+        return lockstepDealer;
+    }
+
+    @Test
+    void playRoundLockstep_NoAllocationAfterWarmUp()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.getCurrentThreadAllocatedBytes();
+        // a whole game warms up the code (and the classes) of the rounds
+        Dealer warmUp = lockstepGame(new Player[4]);
+        while (!warmUp.shouldFinish())
+            warmUp.playRoundLockstep();
+
+        // the JIT keeps recompiling the rounds for a while, and the VM allocates a few bytes when it does, so a game
+        // that allocates nothing is looked for (an allocating round would allocate in every game)
+        long allocated = -1;
+        int rounds = 0;
+        for (int game = 0; game < 10 && allocated != 0; ++game) {
+            Player[] lockstepPlayers = new Player[4];
+            Dealer lockstepDealer = lockstepGame(lockstepPlayers);
+            rounds = 0;
+            long before = threads.getCurrentThreadAllocatedBytes();
+            while (!lockstepDealer.shouldFinish()) {
+                lockstepDealer.playRoundLockstep();
+                ++rounds;
+            }
+            allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            assertTrue(Arrays.stream(lockstepPlayers).mapToInt(Player::score).sum() > 0);
+        }
+
+        assertEquals(0, allocated, allocated + " bytes allocated in " + rounds + " rounds");
+    }
 }
\ No newline at end of file
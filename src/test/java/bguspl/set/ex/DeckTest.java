@@ -0,0 +1,44 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    @Test
+    void draw_EveryCardOnce() {
+        Deck deck = new Deck(81);
+        Random random = new Random(1);
+        boolean[] drawn = new boolean[81];
+        while (deck.size() > 0) {
+            int card = deck.draw(random);
+            assertFalse(drawn[card]);
+            assertFalse(deck.contains(card));
+            drawn[card] = true;
+        }
+        for (boolean d : drawn) assertTrue(d);
+    }
+
+    @Test
+    void add_ReturnsCard() {
+        Deck deck = new Deck(729);
+        Random random = new Random(2);
+        int first = deck.draw(random), second = deck.draw(random);
+        deck.add(first);
+
+        assertEquals(728, deck.size());
+        assertTrue(deck.contains(first));
+        assertFalse(deck.contains(second));
+        int[] cards = Arrays.copyOf(deck.cards(), deck.size());
+        Arrays.sort(cards);
+        assertArrayEquals(IntStream.range(0, 729).filter(card -> card != second).toArray(), cards);
+    }
+}
@@ -0,0 +1,92 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Journal;
+import bguspl.set.ManualClock;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class FreezeServiceTest {
+
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Util util;
+    @Mock
+    private Logger logger;
+
+    private ManualClock clock;
+    private FreezeService freezes;
+
+    @BeforeEach
+    void setUp() {
+        clock = new ManualClock();
+        Env env = new Env(logger, new Config(logger, (String) null), ui, util, Journal.NONE, clock);
+        freezes = new FreezeService(env, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        freezes.shutdown();
+    }
+
+    private Thread freeze(int player, long millis) {
+        Thread thread = new Thread(() -> {
+            try {
+                freezes.freeze(player, millis);
+            } catch (InterruptedException ignored) {}
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    void freeze_ReleasedAtDeadline() throws InterruptedException {
+        Thread first = freeze(0, 1500);
+        verify(ui, timeout(1000)).setFreeze(0, 1500);
+        Thread second = freeze(1, 3000);
+        verify(ui, timeout(1000)).setFreeze(1, 3000);
+
+        clock.advance(1000);
+        // one countdown update for both players
+        verify(ui, timeout(1000)).setFreeze(0, 500);
+        verify(ui, timeout(1000)).setFreeze(1, 2000);
+        assertTrue(first.isAlive());
+
+        clock.advance(500);
+        first.join(1000);
+        assertFalse(first.isAlive());
+        verify(ui).setFreeze(0, 0);
+        assertTrue(freezes.isFrozen(1));
+
+        clock.advance(1500);
+        second.join(1000);
+        assertFalse(second.isAlive());
+        verify(ui).setFreeze(1, 0);
+    }
+
+    @Test
+    void shutdown_ReleasesFrozenPlayers() throws InterruptedException {
+        Thread frozen = freeze(0, 60000);
+        verify(ui, timeout(1000)).setFreeze(0, 60000);
+        freezes.shutdown();
+        frozen.join(1000);
+        assertFalse(frozen.isAlive());
+        assertFalse(freezes.isFrozen(0));
+    }
+}
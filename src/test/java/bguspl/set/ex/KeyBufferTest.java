@@ -0,0 +1,73 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyBufferTest {
+
+    @Test
+    void offer_DropNewest() {
+        KeyBuffer buffer = new KeyBuffer(3, KeyBuffer.DropPolicy.NEWEST);
+        for (int slot = 0; slot < 3; ++slot)
+            assertTrue(buffer.offer(slot));
+        assertFalse(buffer.offer(3));
+        assertTrue(buffer.isFull());
+        assertEquals(1, buffer.dropped());
+        for (int slot = 0; slot < 3; ++slot)
+            assertEquals(slot, buffer.poll());
+        assertEquals(KeyBuffer.EMPTY, buffer.poll());
+    }
+
+    @Test
+    void offer_DropOldest() {
+        KeyBuffer buffer = new KeyBuffer(3, KeyBuffer.DropPolicy.OLDEST);
+        for (int slot = 0; slot < 5; ++slot)
+            buffer.offer(slot);
+        assertEquals(2, buffer.dropped());
+        for (int slot = 2; slot < 5; ++slot)
+            assertEquals(slot, buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void take_ConcurrentProducer() throws InterruptedException {
+        KeyBuffer buffer = new KeyBuffer(3, KeyBuffer.DropPolicy.OLDEST);
+        int presses = 200000;
+        Thread producer = new Thread(() -> {
+            for (int slot = 0; slot < presses; ++slot)
+                buffer.offer(slot);
+        });
+        producer.start();
+
+        // presses arrive in order, and every press is either taken or dropped
+        int taken = 0, last = -1;
+        while (last < presses - 1) {
+            int slot = buffer.take();
+            assertTrue(slot > last);
+            last = slot;
+            ++taken;
+        }
+        producer.join();
+        assertEquals(presses, taken + buffer.dropped());
+    }
+
+    @Test
+    void take_Interrupted() throws InterruptedException {
+        KeyBuffer buffer = new KeyBuffer(3, KeyBuffer.DropPolicy.NEWEST);
+        boolean[] interrupted = {false};
+        Thread consumer = new Thread(() -> {
+            try {
+                buffer.take();
+            } catch (InterruptedException e) {
+                interrupted[0] = true;
+            }
+        });
+        consumer.start();
+        consumer.interrupt();
+        consumer.join();
+        assertTrue(interrupted[0]);
+    }
+}
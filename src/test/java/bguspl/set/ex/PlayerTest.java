@@ -2,6 +2,8 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.Journal;
+import bguspl.set.ManualClock;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
 import org.junit.jupiter.api.AfterEach;
@@ -14,8 +16,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -94,6 +98,41 @@ class PlayerTest {
         assertEquals(expectedValue,player.getPointTime());
     }
 
+    @Test
+    void sleepAfterSet_PenaltyFreezeOnManualClock() throws InterruptedException
+    {
+        ManualClock clock = new ManualClock();
+        Config config = new Config(logger, (String) null);
+        Env env = new Env(logger, config, ui, util, Journal.NONE, clock);
+        player = new Player(env, dealer, table, 0, false);
+        FreezeService freezes = new FreezeService(env, config.players);
+        when(dealer.getFreezes()).thenReturn(freezes);
+
+        player.setPenaltyTime(true);
+        Thread frozen = new Thread(player::sleepAfterSet);
+        frozen.start();
+        // a few seconds of game time pass at once
+        for (long passed = 0; passed < config.penaltyFreezeMillis && frozen.isAlive(); passed += 1000) {
+            verify(ui, timeout(1000)).setFreeze(0, config.penaltyFreezeMillis - passed);
+            clock.advance(1000);
+        }
+        frozen.join(1000);
+
+        assertFalse(frozen.isAlive());
+        assertFalse(player.getPenaltyTime());
+        verify(ui).setFreeze(0, 0);
+        freezes.shutdown();
+    }
+
+    @Test
+    void keyPressed_IgnoredForComputerPlayers()
+    {
+        // the ai thread is the only producer of a computer player's presses, more keys would overflow the buffer
+        for (int i = 0; i < 100; ++i)
+            player.keyPressed(0);
+        assertEquals(0, player.droppedKeyPresses());
+    }
+
     
 
 
@@ -0,0 +1,67 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemainingSetsTest {
+
+    private static Env env(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config));
+    }
+
+    private static void discardAndCompare(Env env) {
+        RemainingSets sets = new RemainingSets(env);
+        Random random = new Random(3);
+        int[] order = IntStream.range(0, env.config.deckSize).toArray();
+        for (int i = order.length - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1), card = order[i];
+            order[i] = order[j];
+            order[j] = card;
+        }
+
+        for (int i = 0; i < order.length; ++i) {
+            int[] left = IntStream.range(0, env.config.deckSize).filter(sets::contains).toArray();
+            assertEquals(env.util.findSets(left, left.length, Integer.MAX_VALUE).size(), sets.count());
+            assertEquals(sets.count() == 0, sets.isEmpty());
+            sets.discard(order[i]);
+            assertFalse(sets.contains(order[i]));
+        }
+        assertTrue(sets.isEmpty());
+    }
+
+    @Test
+    void count_FullDeck() {
+        // any two cards are completed by exactly one third card
+        assertEquals(81 * 80 / 6, new RemainingSets(env(3, 4)).count());
+    }
+
+    @Test
+    void discard_MatchesFindSets() {
+        discardAndCompare(env(3, 4));
+    }
+
+    @Test
+    void discard_MatchesFindSets_FeatureSizeFour() {
+        discardAndCompare(env(4, 3));
+    }
+}
@@ -0,0 +1,91 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SetFindingStrategyTest {
+
+    Table table;
+    Strategy strategy;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config));
+        table = new Table(env);
+        strategy = new SetFindingStrategy(env, table, new Random(config.randomSeed(1))); // as for player 0
+    }
+
+    private int[] nextKeyPresses() {
+        int[] presses = new int[6];
+        return Arrays.copyOf(presses, strategy.nextKeyPresses(0, presses));
+    }
+
+    @Test
+    void nextKeyPresses_NoSetOnTable() {
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(4, 2);
+        assertEquals(0, nextKeyPresses().length);
+    }
+
+    @Test
+    void nextKeyPresses_ClaimsTheSet() {
+        // cards 0, 1 and 2 only differ in their last feature
+        table.placeCard(0, 3);
+        table.placeCard(4, 0);
+        table.placeCard(2, 1);
+        table.placeCard(1, 2);
+        int[] presses = nextKeyPresses();
+        Arrays.sort(presses);
+        assertArrayEquals(new int[]{1, 2, 3}, presses);
+    }
+
+    @Test
+    void nextKeyPresses_SetRemovedFromTable() {
+        table.placeCard(0, 3);
+        table.placeCard(4, 0);
+        table.placeCard(2, 1);
+        table.placeCard(1, 2);
+        assertEquals(1, table.countSets());
+        table.removeCard(1);
+        assertEquals(0, table.countSets());
+        assertEquals(0, nextKeyPresses().length);
+        table.placeCard(2, 1);
+        assertArrayEquals(new int[]{0, 1, 2}, table.getSets()[0]);
+    }
+
+    @Test
+    void nextKeyPresses_RemovesOtherTokensFirst() {
+        table.placeCard(0, 3);
+        table.placeCard(4, 0);
+        table.placeCard(2, 1);
+        table.placeCard(1, 2);
+        table.placeToken(0, 0);
+        table.placeToken(0, 1);
+        int[] presses = nextKeyPresses();
+        assertEquals(0, presses[0]);
+        Arrays.sort(presses, 1, presses.length);
+        assertArrayEquals(new int[]{0, 2, 3}, presses);
+    }
+}
@@ -2,23 +2,37 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.Journal;
+import bguspl.set.JournalReader;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
+    private Config config;
     private Integer[] slotToCard;
     private Integer[] cardToSlot;
 
+    @TempDir
+    Path directory;
+
     @BeforeEach
     void setUp() {
 
@@ -31,7 +45,7 @@ class TableTest {
         properties.put("PlayerKeys1", "81,87,69,82");
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
-        Config config = new Config(logger, properties);
+        config = new Config(logger, properties);
         slotToCard = new Integer[config.tableSize];
         cardToSlot = new Integer[config.deckSize];
 
@@ -95,6 +109,80 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void removeToken_JournaledAfterTokenPlacedMeanwhile() throws IOException, InterruptedException {
+        Path path = directory.resolve("tokens.journal");
+        CountDownLatch placing = new CountDownLatch(1);
+        try (Journal journal = new Journal(path) {
+            @Override
+            public void record(Event event, int first, int second) {
+                if (event == Event.PLACE_TOKEN) {
+                    // the dealer clears the slot after the token was placed, but before it was recorded
+                    placing.countDown();
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ignored) {}
+                }
+                super.record(event, first, second);
+            }
+        }) {
+            Table journaled = new Table(new Env(new MockLogger(), config, new MockUserInterface(), new MockUtil(), journal));
+            journaled.placeCard(0, 0);
+            Thread player = new Thread(() -> journaled.placeToken(0, 0));
+            player.start();
+            placing.await();
+            assertTrue(journaled.removeToken(0));
+            player.join();
+            assertFalse(journaled.hasToken(0, 0));
+        }
+
+        JournalReader reader = new JournalReader(path);
+        assertTrue(reader.next());
+        assertEquals(Journal.Event.PLACE_CARD, reader.event());
+        assertTrue(reader.next());
+        assertEquals(Journal.Event.PLACE_TOKEN, reader.event());
+        assertTrue(reader.next());
+        assertEquals(Journal.Event.REMOVE_TOKENS, reader.event());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void placeToken_OnlyOnCards() {
+        table.placeToken(0, 0);
+        assertFalse(table.hasToken(0, 0)); // no card on the slot
+
+        table.placeCard(8, 0);
+        table.placeToken(0, 0);
+        assertTrue(table.hasToken(0, 0));
+        table.removeCard(0);
+        assertFalse(table.hasToken(0, 0));
+    }
+
+    @Test
+    void placeToken_NotLeftOnRemovedCard() throws InterruptedException {
+        table.placeCard(8, 0);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread player = new Thread(() -> {
+            while (!done.get())
+                table.placeToken(0, 0);
+        });
+        player.start();
+        try {
+            for (int i = 0; i < 2000; ++i) {
+                table.removeCard(0);
+                // a token placed while the card was removed is taken back right away
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                while (table.hasToken(0, 0) && System.nanoTime() < deadline)
+                    Thread.yield();
+                assertFalse(table.hasToken(0, 0));
+                table.placeCard(8, 0);
+            }
+        } finally {
+            done.set(true);
+            player.join();
+        }
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -133,6 +221,16 @@ class TableTest {
             return new int[0][];
         }
 
+        @Override
+        public long cardToPacked(int card) {
+            return 0;
+        }
+
+        @Override
+        public boolean testPackedSet(long[] cards) {
+            return false;
+        }
+
         @Override
         public boolean testSet(int[] cards) {
             return false;
@@ -143,6 +241,16 @@ class TableTest {
             return null;
         }
 
+        @Override
+        public List<int[]> findSets(int[] cards, int size, int count) {
+            return null;
+        }
+
+        @Override
+        public int completeSet(int[] cards) {
+            return -1;
+        }
+
         @Override
         public void spin() {}
     }
@@ -174,6 +282,7 @@ class TableTest {
     @Test
     void findPlayerWithToken () throws InterruptedException
     {
+        fillSomeSlots(); // tokens are placed on cards only
         int count = table.getSlotsWithToken().length;
         table.placeToken(count-1, 1);
         int expectedValue=count-1;
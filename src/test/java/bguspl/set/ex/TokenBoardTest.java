@@ -0,0 +1,105 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBoardTest {
+
+    @Test
+    void place_UpToMaxTokens() {
+        TokenBoard board = new TokenBoard(2, 12, 3);
+        assertTrue(board.place(0, 5));
+        assertFalse(board.place(0, 5));
+        assertTrue(board.place(0, 1));
+        assertTrue(board.place(0, 11));
+        assertTrue(board.isFull(0));
+        assertFalse(board.place(0, 2));
+
+        assertEquals(3, board.count(0));
+        assertArrayEquals(new int[]{1, 5, 11}, board.slots(0));
+        assertEquals(0, board.count(1));
+    }
+
+    @Test
+    void remove_FreesAToken() {
+        TokenBoard board = new TokenBoard(2, 12, 3);
+        board.place(1, 4);
+        assertFalse(board.remove(0, 4));
+        assertTrue(board.remove(1, 4));
+        assertFalse(board.has(1, 4));
+        assertEquals(0, board.players(4).length);
+        assertEquals(0, board.count(1));
+    }
+
+    @Test
+    void removeAll_ManyPlayers() {
+        // more players and slots than fit in a single word
+        TokenBoard board = new TokenBoard(130, 70, 3);
+        board.place(0, 69);
+        board.place(64, 69);
+        board.place(129, 69);
+        board.place(129, 3);
+
+        assertArrayEquals(new int[]{0, 64, 129}, board.players(69));
+        assertTrue(board.removeAll(69));
+        assertFalse(board.removeAll(69));
+        assertEquals(0, board.players(69).length);
+        assertArrayEquals(new int[]{3}, board.slots(129));
+    }
+
+    @Test
+    void place_ConcurrentWithRemoveAll() throws InterruptedException {
+        int players = 8, slots = 12;
+        TokenBoard board = new TokenBoard(players, slots, 3);
+        List<Thread> threads = new ArrayList<>();
+        for (int player = 0; player < players; ++player) {
+            int id = player;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10000; ++i)
+                    if (!board.remove(id, i % slots)) board.place(id, i % slots);
+            }));
+        }
+        threads.add(new Thread(() -> {
+            for (int i = 0; i < 10000; ++i) board.removeAll(i % slots);
+        }));
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        for (int player = 0; player < players; ++player) {
+            assertEquals(board.slots(player).length, board.count(player));
+            for (int slot : board.slots(player))
+                assertTrue(List.of(box(board.players(slot))).contains(player));
+        }
+    }
+
+    @Test
+    void removeAll_RacingPlace() throws InterruptedException {
+        TokenBoard board = new TokenBoard(2, 1, 1);
+        for (int round = 0; round < 2000; ++round) {
+            Thread player = new Thread(() -> board.place(0, 0));
+            player.start();
+            board.removeAll(0);
+            player.join();
+            // the token was either removed with the slot, or placed after it was cleared, never half of it
+            int tokens = board.has(0, 0) ? 1 : 0;
+            assertEquals(tokens, board.count(0));
+            assertEquals(tokens, board.players(0).length);
+            assertEquals(tokens > 0, board.removeAll(0));
+            assertEquals(0, board.count(0));
+            assertEquals(0, board.players(0).length);
+        }
+    }
+
+    private static Integer[] box(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; ++i) boxed[i] = values[i];
+        return boxed;
+    }
+}